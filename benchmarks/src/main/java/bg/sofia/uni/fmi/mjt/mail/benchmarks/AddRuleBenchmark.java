@@ -0,0 +1,65 @@
+package bg.sofia.uni.fmi.mjt.mail.benchmarks;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.RawMail;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Outlook#addRule} applied retroactively to an inbox of 10k and 1M mails.
+ * Adding a rule moves mails out of the inbox, so every measurement gets a freshly filled mailbox.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx8g"})
+public class AddRuleBenchmark {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int BODY_LENGTH = 120;
+    private static final String RECEIVER = MailGenerator.accountName(0);
+    private static final String SENDER = MailGenerator.email(1);
+    private static final String RULE = "subject-or-body-includes: exam, deadline";
+
+    @Param({"10000", "1000000"})
+    private int inboxSize;
+
+    private Outlook outlook;
+
+    @Setup(Level.Iteration)
+    public void fillInbox() {
+        MailGenerator generator = new MailGenerator(42);
+        outlook = MailGenerator.outlookWithAccounts(2);
+        outlook.createFolder(RECEIVER, "/inbox/exams");
+        List<String> recipients = List.of(MailGenerator.email(0));
+        List<RawMail> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < inboxSize; i++) {
+            batch.add(new RawMail(generator.metadata(SENDER, recipients, i), generator.text(BODY_LENGTH)));
+            if (batch.size() == BATCH_SIZE) {
+                outlook.receiveMails(RECEIVER, batch);
+                batch.clear();
+            }
+        }
+        outlook.receiveMails(RECEIVER, batch);
+    }
+
+    @Benchmark
+    public void addRule() {
+        outlook.addRule(RECEIVER, "/inbox/exams", RULE, 1);
+    }
+}
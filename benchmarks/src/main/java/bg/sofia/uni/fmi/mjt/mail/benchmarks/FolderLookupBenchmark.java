@@ -0,0 +1,73 @@
+package bg.sofia.uni.fmi.mjt.mail.benchmarks;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Outlook#getMailsFromFolder} for folders nested at different depths under /inbox. The folder is
+ * returned as a live view, so every mail of it is read, as a caller would, for the lookup to be measured
+ * with the reads it defers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FolderLookupBenchmark {
+    private static final String ACCOUNT = MailGenerator.accountName(0);
+    private static final int SIBLINGS = 8;
+
+    @Param({"1", "4", "16"})
+    private int depth;
+
+    @Param({"10", "1000"})
+    private int mails;
+
+    private Outlook outlook;
+    private String path;
+
+    @Setup
+    public void setUp() {
+        MailGenerator generator = new MailGenerator(42);
+        outlook = MailGenerator.outlookWithAccounts(2);
+        StringBuilder current = new StringBuilder("/inbox");
+        for (int level = 0; level < depth; level++) {
+            for (int sibling = 0; sibling < SIBLINGS; sibling++) {
+                outlook.createFolder(ACCOUNT, current + "/folder" + sibling);
+            }
+            current.append("/folder").append(level % SIBLINGS);
+        }
+        path = current.toString();
+        outlook.addRule(ACCOUNT, path, "subject-or-body-includes: benchmark", 1);
+        for (int i = 0; i < mails; i++) {
+            outlook.receiveMail(ACCOUNT, generator.metadata(MailGenerator.email(1), List.of(), i),
+                "benchmark " + generator.text(100));
+        }
+    }
+
+    @Benchmark
+    public void getMailsFromFolder(Blackhole blackhole) {
+        Collection<Mail> folder = outlook.getMailsFromFolder(ACCOUNT, path);
+        for (Mail mail : folder) {
+            blackhole.consume(mail);
+        }
+        blackhole.consume(folder.size());
+    }
+}
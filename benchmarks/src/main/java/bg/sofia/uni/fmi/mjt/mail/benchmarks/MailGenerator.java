@@ -0,0 +1,125 @@
+package bg.sofia.uni.fmi.mjt.mail.benchmarks;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.StringJoiner;
+
+/**
+ * Deterministic generator of synthetic accounts, mails and rules for the benchmarks.
+ * Words are drawn from a small vocabulary with a skewed distribution, so a few keywords are
+ * common and most are rare, as in real mailboxes.
+ */
+public final class MailGenerator {
+    private static final String[] WORDS = {
+        "the", "and", "mjt", "exam", "homework", "deadline", "java", "stream", "lambda", "record",
+        "course", "lecture", "lab", "project", "grade", "result", "team", "meeting", "review", "merge",
+        "build", "test", "release", "invoice", "payment", "order", "shipping", "newsletter", "offer", "sale",
+        "weekly", "digest", "report", "update", "security", "password", "account", "welcome", "reminder", "event",
+        "conference", "ticket", "travel", "booking", "hotel", "flight", "family", "photos", "party", "dinner"
+    };
+    private static final String[] TAGS = {"p", "div", "span", "b", "td", "li"};
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2022, 1, 1, 0, 0);
+    private static final DateTimeFormatter RECEIVED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int MAX_SUBJECT_WORDS = 6;
+    private static final int MAX_PRIORITY = 10;
+
+    private final Random random;
+
+    public MailGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static String accountName(int account) {
+        return "user" + account;
+    }
+
+    public static String email(int account) {
+        return "user" + account + "@fmi.bg";
+    }
+
+    public static Outlook outlookWithAccounts(int accounts) {
+        Outlook outlook = new Outlook();
+        for (int i = 0; i < accounts; i++) {
+            outlook.addNewAccount(accountName(i), email(i));
+        }
+        return outlook;
+    }
+
+    public String word() {
+        // squaring a uniform sample skews the choice towards the start of the vocabulary
+        double skewed = random.nextDouble() * random.nextDouble();
+        return WORDS[(int) (skewed * WORDS.length)];
+    }
+
+    public String subject(int sequence) {
+        StringJoiner subject = new StringJoiner(" ");
+        int words = 1 + random.nextInt(MAX_SUBJECT_WORDS);
+        for (int i = 0; i < words; i++) {
+            subject.add(word());
+        }
+        return subject + " #" + sequence;
+    }
+
+    public String text(int length) {
+        StringBuilder text = new StringBuilder(length + WORDS.length);
+        while (text.length() < length) {
+            text.append(word()).append(random.nextInt(10) == 0 ? ". " : " ");
+        }
+        return text.toString();
+    }
+
+    public String html(int length) {
+        StringBuilder html = new StringBuilder(length + WORDS.length).append("<html><body>");
+        while (html.length() < length) {
+            String tag = TAGS[random.nextInt(TAGS.length)];
+            html.append('<').append(tag).append(" class=\"c").append(random.nextInt(100)).append("\">")
+                .append(word()).append(' ').append(word())
+                .append("</").append(tag).append('>');
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    public String metadata(String senderEmail, Collection<String> recipients, int sequence) {
+        StringBuilder metadata = new StringBuilder();
+        if (senderEmail != null) {
+            metadata.append("sender: ").append(senderEmail).append('\n');
+        }
+        metadata.append("subject: ").append(subject(sequence)).append('\n');
+        if (!recipients.isEmpty()) {
+            metadata.append("recipients: ").append(String.join(", ", recipients)).append('\n');
+        }
+        return metadata.append("received: ").append(EPOCH.plusMinutes(sequence).format(RECEIVED_FORMAT)).toString();
+    }
+
+    /**
+     * @return a rule definition with a keyword condition and, sometimes, a sender condition
+     */
+    public String ruleDefinition(String senderEmail) {
+        List<String> conditions = new ArrayList<>();
+        conditions.add("subject-includes: " + word());
+        if (random.nextBoolean()) {
+            conditions.add("subject-or-body-includes: " + word() + ", " + word());
+        }
+        if (senderEmail != null && random.nextBoolean()) {
+            conditions.add("from: " + senderEmail);
+        }
+        return String.join(System.lineSeparator(), conditions);
+    }
+
+    /**
+     * Creates one folder per rule under /inbox and adds up to ten rules, one per priority.
+     */
+    public void addRules(Outlook outlook, String accountName, int rules, String senderEmail) {
+        for (int i = 1; i <= Math.min(rules, MAX_PRIORITY); i++) {
+            String folder = "/inbox/rule" + i;
+            outlook.createFolder(accountName, folder);
+            outlook.addRule(accountName, folder, ruleDefinition(senderEmail), i);
+        }
+    }
+}
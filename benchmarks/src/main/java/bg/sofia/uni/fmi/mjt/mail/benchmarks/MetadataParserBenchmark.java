@@ -0,0 +1,93 @@
+package bg.sofia.uni.fmi.mjt.mail.benchmarks;
+
+import bg.sofia.uni.fmi.mjt.mail.parser.MailMetadata;
+import bg.sofia.uni.fmi.mjt.mail.parser.MailMetadataParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link MailMetadataParser} with the split-based parsing it replaced in {@code Outlook.convertToMail}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataParserBenchmark {
+    @Param({"1", "10", "100"})
+    private int recipients;
+
+    private String metadata;
+
+    @Setup
+    public void setUp() {
+        StringJoiner recipientList = new StringJoiner(", ");
+        for (int i = 0; i < recipients; i++) {
+            recipientList.add("user" + i + "@fmi.bg");
+        }
+        metadata = "sender: stoyo@fmi.bg" + System.lineSeparator() +
+            "subject: Hello, MJT! Results from the first homework" + System.lineSeparator() +
+            "recipients: " + recipientList + System.lineSeparator() +
+            "received: 2022-12-08 14:14";
+    }
+
+    @Benchmark
+    public MailMetadata streaming() {
+        return MailMetadataParser.parse(metadata);
+    }
+
+    @Benchmark
+    public MailMetadata split() {
+        return parseWithSplit(metadata);
+    }
+
+    /**
+     * The parsing loop of the original {@code Outlook.convertToMail}, minus the account lookup.
+     */
+    private static MailMetadata parseWithSplit(String mailMetadata) {
+        String[] lines = mailMetadata.split(System.lineSeparator());
+        String sender = null;
+        String subject = "";
+        Set<String> recipients = new LinkedHashSet<>();
+        LocalDateTime received = null;
+        for (String line : lines) {
+            String[] lineWords = line.split(":");
+            if (lineWords[0].strip().equals("subject")) {
+                subject = lineWords[1].strip();
+            }
+            if (lineWords[0].strip().equals("recipients")) {
+                String[] recipientEmails = lineWords[1].strip().split(",");
+                for (String recipientEmail : recipientEmails) {
+                    recipients.add(recipientEmail.strip());
+                }
+            }
+            if (lineWords[0].strip().equals("sender")) {
+                sender = lineWords[1].strip();
+            }
+            if (lineWords[0].strip().equals("received")) {
+                DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+                received = LocalDateTime.parse(
+                    line.substring(line.indexOf(":") + 1).strip(), df
+                );
+            }
+        }
+        return new MailMetadata(sender, subject, recipients, received);
+    }
+}
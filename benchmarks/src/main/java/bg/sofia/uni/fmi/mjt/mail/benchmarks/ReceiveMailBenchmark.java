@@ -0,0 +1,64 @@
+package bg.sofia.uni.fmi.mjt.mail.benchmarks;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Outlook#receiveMail} for an account with a varying number of rules.
+ * The same mails are received over and over, so after the first pass the mailbox stops growing
+ * and the numbers show parsing and rule evaluation rather than folder growth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiveMailBenchmark {
+    private static final int DISTINCT_MAILS = 1024;
+    private static final String RECEIVER = MailGenerator.accountName(0);
+    private static final String SENDER = MailGenerator.email(1);
+
+    @Param({"0", "10"})
+    private int rules;
+
+    @Param({"200", "20000"})
+    private int bodyLength;
+
+    private Outlook outlook;
+    private String[] metadata;
+    private String[] bodies;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        MailGenerator generator = new MailGenerator(42);
+        outlook = MailGenerator.outlookWithAccounts(2);
+        generator.addRules(outlook, RECEIVER, rules, SENDER);
+        metadata = new String[DISTINCT_MAILS];
+        bodies = new String[DISTINCT_MAILS];
+        for (int i = 0; i < DISTINCT_MAILS; i++) {
+            metadata[i] = generator.metadata(SENDER, List.of(MailGenerator.email(0)), i);
+            bodies[i] = generator.html(bodyLength);
+        }
+    }
+
+    @Benchmark
+    public void receiveMail() {
+        int mail = next++ & (DISTINCT_MAILS - 1);
+        outlook.receiveMail(RECEIVER, metadata[mail], bodies[mail]);
+    }
+}
@@ -0,0 +1,72 @@
+package bg.sofia.uni.fmi.mjt.mail.benchmarks;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+import bg.sofia.uni.fmi.mjt.mail.text.MailTokens;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RuleDefinition#matchesMail} across body sizes, both for a mail seen for the first time
+ * (which has to be tokenized) and for a mail whose tokens are already computed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleMatchBenchmark {
+    private static final String RECEIVER = MailGenerator.email(0);
+
+    @Param({"100", "10000", "100000"})
+    private int bodyLength;
+
+    private RuleDefinition rule;
+    private Account sender;
+    private Set<String> recipients;
+    private String subject;
+    private String body;
+    private LocalDateTime received;
+    private Mail tokenizedMail;
+    private MailTokens tokens;
+
+    @Setup
+    public void setUp() {
+        MailGenerator generator = new MailGenerator(42);
+        rule = new RuleDefinition("/inbox/exams", Set.of("exam", "result"), Set.of("exam", "deadline"),
+            Set.of(), "", 1);
+        sender = new Account(MailGenerator.email(1), MailGenerator.accountName(1));
+        recipients = Set.of(RECEIVER);
+        subject = generator.subject(1);
+        body = generator.html(bodyLength);
+        received = LocalDateTime.of(2022, 12, 8, 14, 14);
+        tokenizedMail = new Mail(sender, recipients, subject, body, received);
+        tokens = new MailTokens(subject, tokenizedMail.content());
+        rule.matchesMail(tokenizedMail, tokens, RECEIVER);
+    }
+
+    @Benchmark
+    public boolean matchesNewMail() {
+        return rule.matchesMail(new Mail(sender, recipients, subject, body, received), RECEIVER);
+    }
+
+    @Benchmark
+    public boolean matchesTokenizedMail() {
+        return rule.matchesMail(tokenizedMail, tokens, RECEIVER);
+    }
+}
@@ -0,0 +1,76 @@
+package bg.sofia.uni.fmi.mjt.mail.benchmarks;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Outlook#sendMail} fan-out with 1, 100 and 10k hosted accounts, for a single recipient,
+ * a ten-recipient list and a broadcast without recipients. Each account has a few rules, so every
+ * delivery also pays for rule evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SendMailBenchmark {
+    private static final int RULES_PER_ACCOUNT = 3;
+    private static final int LIST_SIZE = 10;
+    private static final String SENDER = MailGenerator.accountName(0);
+
+    @Param({"1", "100", "10000"})
+    private int accounts;
+
+    private Outlook outlook;
+    private String singleRecipientMetadata;
+    private String listMetadata;
+    private String broadcastMetadata;
+    private String body;
+
+    @Setup
+    public void setUp() {
+        MailGenerator generator = new MailGenerator(42);
+        outlook = MailGenerator.outlookWithAccounts(accounts);
+        for (int i = 1; i < accounts; i++) {
+            generator.addRules(outlook, MailGenerator.accountName(i), RULES_PER_ACCOUNT, MailGenerator.email(0));
+        }
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < LIST_SIZE; i++) {
+            list.add(MailGenerator.email(1 + i * accounts / LIST_SIZE));
+        }
+        singleRecipientMetadata = generator.metadata(null, List.of(MailGenerator.email(accounts - 1)), 1);
+        listMetadata = generator.metadata(null, list, 2);
+        broadcastMetadata = generator.metadata(null, List.of(), 3);
+        body = generator.text(2000);
+    }
+
+    @Benchmark
+    public void sendToOneRecipient() {
+        outlook.sendMail(SENDER, singleRecipientMetadata, body);
+    }
+
+    @Benchmark
+    public void sendToList() {
+        outlook.sendMail(SENDER, listMetadata, body);
+    }
+
+    @Benchmark
+    public void broadcast() {
+        outlook.sendMail(SENDER, broadcastMetadata, body);
+    }
+}
@@ -0,0 +1,149 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.delivery.Backpressure;
+import bg.sofia.uni.fmi.mjt.mail.delivery.ShardedStage;
+import bg.sofia.uni.fmi.mjt.mail.store.Operation;
+import bg.sofia.uni.fmi.mjt.mail.tree.AccountMail;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Sends and receives the mails of an {@link Outlook} asynchronously, through a pipeline of four stages
+ * connected by bounded queues:
+ * <ol>
+ *     <li>parse - the metadata and content are validated and converted to a mail;</li>
+ *     <li>route - the accounts the mail goes to are found and the operation is logged, and the mail is
+ *     handed to the next stage once the log is released;</li>
+ *     <li>classify - the rules of each of those accounts pick the folder of the mail;</li>
+ *     <li>store - the mail is stored in that folder, or in the sender's "/sent" folder.</li>
+ * </ol>
+ * The first two stages are sharded by the account calling, the last two by the account the mail goes to,
+ * so the mails of one account are processed one at a time and in order in every stage, without locking.
+ * A full queue blocks or rejects the callers, as chosen by the {@link Backpressure}; the stages pass work
+ * on to each other waiting for room, so a slow stage holds back the ones before it.
+ * The other operations of the client are not queued: they are called on the {@link Outlook} directly.
+ */
+public class AsyncMailClient implements AutoCloseable {
+    private final Outlook outlook;
+    private final Backpressure backpressure;
+    private final ShardedStage parse;
+    private final ShardedStage route;
+    private final ShardedStage classify;
+    private final ShardedStage store;
+
+    /**
+     * @param outlook       the client whose mails are sent and received
+     * @param shards        the number of threads of each stage
+     * @param queueCapacity the number of work items each thread of a stage can queue
+     * @param backpressure  what happens to a call when the first stage is full
+     */
+    public AsyncMailClient(Outlook outlook, int shards, int queueCapacity, Backpressure backpressure) {
+        if (outlook == null) {
+            throw new IllegalArgumentException("Outlook is invalid!");
+        }
+        if (backpressure == null) {
+            throw new IllegalArgumentException("Backpressure is invalid!");
+        }
+        this.outlook = outlook;
+        this.backpressure = backpressure;
+        this.parse = new ShardedStage("mail-parse", shards, queueCapacity);
+        this.route = new ShardedStage("mail-route", shards, queueCapacity);
+        this.classify = new ShardedStage("mail-classify", shards, queueCapacity);
+        this.store = new ShardedStage("mail-store", shards, queueCapacity);
+    }
+
+    /**
+     * Same as {@link Outlook#sendMail}, asynchronously.
+     *
+     * @return a future completed once the mail is in the sender's "/sent" folder and every recipient
+     * has received it, or exceptionally if the parameters are invalid or the pipeline is full
+     */
+    public CompletableFuture<Void> sendMail(String accountName, String mailMetadata, String mailContent) {
+        return submit(accountName, mailMetadata, mailContent, mail -> outlook.persistDelivery(
+            outlook.accountsOf(accountName, mail), () -> {
+                AccountMail sender = outlook.accountMail(accountName);
+                Collection<AccountMail> receivers = outlook.receiversOf(sender, mail);
+                return () -> {
+                    Mail stored = outlook.intern(mail);
+                    CompletableFuture<?>[] deliveries = new CompletableFuture<?>[receivers.size() + 1];
+                    deliveries[0] = storeSent(sender, stored);
+                    int i = 1;
+                    for (AccountMail receiver : receivers) {
+                        deliveries[i++] = deliver(receiver, stored);
+                    }
+                    return released(stored, CompletableFuture.allOf(deliveries));
+                };
+            }, () -> Operation.sendMail(accountName, mailMetadata, mailContent)));
+    }
+
+    /**
+     * Same as {@link Outlook#receiveMail}, asynchronously.
+     *
+     * @return a future completed once the mail is in the receiver's folder and in the sender's "/sent"
+     * folder, or exceptionally if the parameters are invalid or the pipeline is full
+     */
+    public CompletableFuture<Void> receiveMail(String accountName, String mailMetadata, String mailContent) {
+        return submit(accountName, mailMetadata, mailContent, mail -> {
+            AccountMail sender = outlook.senderOf(accountName, mail);
+            return outlook.persistDelivery(() -> List.of(accountName, mail.sender().name()), () -> {
+                AccountMail receiver = outlook.accountMail(accountName);
+                return () -> {
+                    Mail stored = outlook.intern(mail);
+                    return released(stored,
+                        CompletableFuture.allOf(deliver(receiver, stored), storeSent(sender, stored)));
+                };
+            }, () -> Operation.receiveMail(accountName, mailMetadata, mailContent));
+        });
+    }
+
+    /**
+     * @return the number of work items waiting in all the stages
+     */
+    public int queued() {
+        return parse.queued() + route.queued() + classify.queued() + store.queued();
+    }
+
+    /**
+     * Rejects new mails, and waits for the ones in the pipeline to be processed.
+     */
+    @Override
+    public void close() {
+        parse.close();
+        route.close();
+        classify.close();
+        store.close();
+    }
+
+    private CompletableFuture<Void> submit(String accountName, String mailMetadata, String mailContent,
+                                           Function<Mail, CompletableFuture<Void>> routing) {
+        return parse.submit(accountName, () -> outlook.parseMail(accountName, mailMetadata, mailContent),
+                backpressure)
+            .thenCompose(mail -> route.submit(accountName, () -> routing.apply(mail), Backpressure.BLOCK))
+            .thenCompose(Function.identity());
+    }
+
+    /**
+     * @return the deliveries, which give back the reference to the stored mail once they are all done
+     */
+    private CompletableFuture<Void> released(Mail stored, CompletableFuture<Void> deliveries) {
+        return deliveries.whenComplete((ignored, failure) -> outlook.release(stored));
+    }
+
+    private CompletableFuture<Void> deliver(AccountMail receiver, Mail mail) {
+        return classify.submit(receiver, () -> receiver.classify(mail), Backpressure.BLOCK)
+            .thenCompose(classification -> store.<Void>submit(receiver, () -> {
+                receiver.deliver(classification);
+                return null;
+            }, Backpressure.BLOCK).whenComplete((ignored, failure) -> classification.release()));
+    }
+
+    private CompletableFuture<Void> storeSent(AccountMail sender, Mail mail) {
+        return store.submit(sender, () -> {
+            sender.sendMail(mail);
+            return null;
+        }, Backpressure.BLOCK);
+    }
+}
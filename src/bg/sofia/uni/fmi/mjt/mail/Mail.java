@@ -1,7 +1,82 @@
 package bg.sofia.uni.fmi.mjt.mail;
 
+import bg.sofia.uni.fmi.mjt.mail.body.MailBody;
+
 import java.time.LocalDateTime;
+import java.util.Objects;
 import java.util.Set;
 
-public record Mail(Account sender, Set<String> recipients, String subject, String body, LocalDateTime received) {
-}
\ No newline at end of file
+/**
+ * @param id      identifier assigned when the mail is first stored, unique within a client;
+ *                {@link #NO_ID} until then. Stored mails are equal only if their ids are
+ * @param content the body of the mail, which may be kept off the heap; see {@link #body()}
+ */
+public record Mail(long id, Account sender, Set<String> recipients, String subject, MailBody content,
+                   LocalDateTime received) {
+    public static final long NO_ID = 0;
+
+    public Mail(Account sender, Set<String> recipients, String subject, String body, LocalDateTime received) {
+        this(sender, recipients, subject, MailBody.of(body), received);
+    }
+
+    public Mail(Account sender, Set<String> recipients, String subject, MailBody content, LocalDateTime received) {
+        this(NO_ID, sender, recipients, subject, content, received);
+    }
+
+    /**
+     * @return the same mail with the given id and its body kept as given
+     */
+    public Mail withId(long newId, MailBody storedContent) {
+        return new Mail(newId, sender, recipients, subject, storedContent, received);
+    }
+
+    /**
+     * Compares the cheap fields first, so a body, which may have to be decoded, is compared last.
+     *
+     * @return true if the two mails have the same sender, recipients, subject, body and received time
+     */
+    public boolean hasSameContent(Mail other) {
+        return Objects.equals(subject, other.subject) && Objects.equals(received, other.received)
+            && Objects.equals(sender, other.sender) && Objects.equals(recipients, other.recipients)
+            && Objects.equals(content, other.content);
+    }
+
+    public int contentHashCode() {
+        return Objects.hash(sender, recipients, subject, content, received);
+    }
+
+    /**
+     * @return the text of the body, decoded on every call if the body is kept off the heap
+     */
+    public String body() {
+        return content == null ? null : content.text();
+    }
+
+    // a stored mail is identified by its id, so comparing and hashing it costs the same whatever its size;
+    // only mails that are not stored yet, e.g. just parsed, are compared by their content
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Mail other)) {
+            return false;
+        }
+        if (id != NO_ID || other.id != NO_ID) {
+            return id == other.id;
+        }
+        return hasSameContent(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return id != NO_ID ? Long.hashCode(id) : contentHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Mail[id=" + id + ", sender=" + sender + ", recipients=" + recipients + ", subject=" + subject
+            + ", body=" + body() + ", received=" + received + "]";
+    }
+}
@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import java.util.List;
+
+/**
+ * A page of mails, newest first.
+ *
+ * @param continuationToken opaque token to pass back for the next page, or null if this is the last page
+ */
+public record MailPage(List<Mail> mails, String continuationToken) {
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+}
@@ -1,54 +1,133 @@
 package bg.sofia.uni.fmi.mjt.mail;
 
+import bg.sofia.uni.fmi.mjt.mail.body.MailBodyStore;
+import bg.sofia.uni.fmi.mjt.mail.delivery.ParallelDelivery;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.RuleAlreadyDefinedException;
+import bg.sofia.uni.fmi.mjt.mail.metrics.MailMetrics;
+import bg.sofia.uni.fmi.mjt.mail.metrics.Phase;
+import bg.sofia.uni.fmi.mjt.mail.parser.MailMetadata;
+import bg.sofia.uni.fmi.mjt.mail.parser.MailMetadataParser;
 import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+import bg.sofia.uni.fmi.mjt.mail.store.AccountSnapshot;
+import bg.sofia.uni.fmi.mjt.mail.store.MailStore;
+import bg.sofia.uni.fmi.mjt.mail.store.Operation;
 import bg.sofia.uni.fmi.mjt.mail.tree.AccountMail;
+import bg.sofia.uni.fmi.mjt.mail.tree.MailRepository;
+import bg.sofia.uni.fmi.mjt.mail.tree.RuleApplication;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * Thread-safe mail client. Accounts are looked up in concurrent maps and every account
+ * guards its own mailbox, so operations on different accounts never contend.
+ */
 public class Outlook implements MailClient {
-    private final Map<String, AccountMail> accounts = new HashMap<>();
-    private final Map<String, String> emails = new HashMap<>();
+    private final Map<String, AccountMail> accounts = new ConcurrentHashMap<>();
+    private final Map<String, AccountMail> emails = new ConcurrentHashMap<>();
+    private final MailRepository repository;
+    private final MailMetrics metrics;
+    private final boolean timed;
     private final static int MIN_PRIORITY = 1;
     private final static int MAX_PRIORITY = 10;
+    private final ParallelDelivery parallelDelivery;
+    private final MailStore store;
+    private final Set<CompletableFuture<Void>> pendingWork = ConcurrentHashMap.newKeySet();
 
-    private Mail convertToMail(String accountName, String mailMetadata, String mailContent) {
-        String[] lines = mailMetadata.split(System.lineSeparator());
-        Account sender = null;
-        String subject = "";
-        String body = mailContent;
-        Set<String> recipients = new LinkedHashSet<>();
-        LocalDateTime received = null;
-        for (String line : lines) {
-            String[] lineWords = line.split(":");
-            if (lineWords[0].strip().equals("subject")) {
-                subject = lineWords[1].strip();
-            }
-            if (lineWords[0].strip().equals("recipients")) {
-                String[] recipientEmails = lineWords[1].strip().split(",");
-                for (String recipientEmail : recipientEmails) {
-                    recipients.add(recipientEmail.strip());
-                }
-            }
-            if (lineWords[0].strip().equals("sender")) {
-                sender = accounts.get(emails.get(lineWords[1].strip())).getAccount();
-            }
-            if (lineWords[0].strip().equals("received")) {
-                DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-                received = LocalDateTime.parse(
-                    line.substring(line.indexOf(":") + 1).strip(), df
-                );
-            }
+    public Outlook() {
+        this(null, null);
+    }
+
+    /**
+     * @param parallelDelivery delivers the mails of {@link #sendMailAsync} to their recipients in parallel;
+     *                         if null, they are delivered on the caller's thread
+     */
+    public Outlook(ParallelDelivery parallelDelivery) {
+        this(parallelDelivery, null);
+    }
+
+    /**
+     * @param store recovers the state of the client and persists every change to it
+     */
+    public Outlook(MailStore store) {
+        this(null, store);
+    }
+
+    /**
+     * @param parallelDelivery delivers the mails of {@link #sendMailAsync} to their recipients in parallel;
+     *                         if null, they are delivered on the caller's thread
+     * @param store            recovers the state of the client and persists every change to it;
+     *                         if null, the state is kept only in memory
+     */
+    public Outlook(ParallelDelivery parallelDelivery, MailStore store) {
+        this(parallelDelivery, store, MailBodyStore.HEAP);
+    }
+
+    /**
+     * @param parallelDelivery delivers the mails of {@link #sendMailAsync} to their recipients in parallel;
+     *                         if null, they are delivered on the caller's thread
+     * @param store            recovers the state of the client and persists every change to it;
+     *                         if null, the state is kept only in memory
+     * @param bodies           keeps the bodies of the mails, e.g. off the heap in a
+     *                         {@link bg.sofia.uni.fmi.mjt.mail.body.MappedBodyStore}
+     */
+    public Outlook(ParallelDelivery parallelDelivery, MailStore store, MailBodyStore bodies) {
+        this(parallelDelivery, store, bodies, MailMetrics.NOOP);
+    }
+
+    /**
+     * @param parallelDelivery delivers the mails of {@link #sendMailAsync} to their recipients in parallel;
+     *                         if null, they are delivered on the caller's thread
+     * @param store            recovers the state of the client and persists every change to it;
+     *                         if null, the state is kept only in memory
+     * @param bodies           keeps the bodies of the mails
+     * @param metrics          records the deliveries to every account and the evaluations of its rules,
+     *                         e.g. a {@link bg.sofia.uni.fmi.mjt.mail.metrics.CountingMailMetrics}
+     */
+    public Outlook(ParallelDelivery parallelDelivery, MailStore store, MailBodyStore bodies, MailMetrics metrics) {
+        if (bodies == null) {
+            throw new IllegalArgumentException("Body store is invalid!");
+        }
+        if (metrics == null) {
+            throw new IllegalArgumentException("Metrics are invalid!");
+        }
+        this.parallelDelivery = parallelDelivery;
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+        this.store = store;
+        this.repository = new MailRepository(bodies);
+        if (store != null) {
+            store.recover(new StoredState());
         }
-        if (sender == null) {
-            sender = accounts.get(accountName).getAccount();
+    }
+
+    private Mail convertToMail(String accountName, String mailMetadata, String mailContent) {
+        return convertToMail(mailMetadata, mailContent, metadata -> metadata.senderEmail() == null
+            ? accounts.get(accountName).getAccount()
+            : emails.get(metadata.senderEmail()).getAccount());
+    }
+
+    /**
+     * @return the mail, which is not stored yet: it is interned in the repository once it is validated,
+     * so a mail that is rejected is never kept, and the stored mail is passed to every account
+     */
+    private Mail convertToMail(String mailMetadata, String mailContent, Function<MailMetadata, Account> senderOf) {
+        long start = timed ? System.nanoTime() : 0;
+        MailMetadata metadata = MailMetadataParser.parse(mailMetadata);
+        Account sender = senderOf.apply(metadata);
+        Mail mail = new Mail(sender, metadata.recipients(), metadata.subject(), mailContent, metadata.received());
+        if (timed) {
+            metrics.recordPhase(Phase.PARSE, System.nanoTime() - start);
         }
-        Mail mail = new Mail(sender, recipients, subject, body, received);
         return mail;
     }
 
@@ -123,14 +202,15 @@ public class Outlook implements MailClient {
         if (email == null || email.isBlank() || email.isBlank()) {
             throw new IllegalArgumentException("Email is invalid!");
         }
-        final Account account = new Account(email, accountName);
-        final AccountMail accountMail = new AccountMail(account);
-        if (accounts.containsKey(accountName.toLowerCase())) {
-            throw new AccountAlreadyExistsException("Account already exists!");
-        }
-        accounts.put(accountName.toLowerCase(), accountMail);
-        emails.put(email, accountName);
-        return account;
+        return persist(() -> {
+            final Account account = new Account(email, accountName);
+            final AccountMail accountMail = new AccountMail(account, repository, metrics);
+            if (accounts.putIfAbsent(accountName.toLowerCase(), accountMail) != null) {
+                throw new AccountAlreadyExistsException("Account already exists!");
+            }
+            emails.put(email, accountMail);
+            return account;
+        }, account -> List.of(Operation.addAccount(accountName, email)));
     }
 
     @Override
@@ -141,14 +221,48 @@ public class Outlook implements MailClient {
         if (path == null || path.isEmpty() || path.isBlank()) {
             throw new IllegalArgumentException("Path is invalid!");
         }
-        if (!accounts.containsKey(accountName)) {
+        AccountMail account = accounts.get(accountName);
+        if (account == null) {
             throw new AccountNotFoundException("Account is not found!");
         }
-        accounts.get(accountName).createFolder(path);
+        persist(() -> List.of(accountName), () -> account.createFolder(path),
+            () -> Operation.createFolder(accountName, path));
     }
 
     @Override
     public void addRule(String accountName, String folderPath, String ruleDefinition, int priority) {
+        addRule(accountName, folderPath, ruleDefinition, priority,
+            (account, rule) -> account.addRule(rule, Runnable::run)).completion().join();
+    }
+
+    /**
+     * Same as {@link #addRule}, but only the rule is added before returning: it applies to every mail delivered
+     * from then on, while the matching mails already in the inbox are moved in the background.
+     *
+     * @return the progress of moving the mails already in the inbox
+     */
+    public RuleApplication addRuleAsync(String accountName, String folderPath, String ruleDefinition, int priority) {
+        return addRule(accountName, folderPath, ruleDefinition, priority,
+            (account, rule) -> account.addRule(rule, ForkJoinPool.commonPool()));
+    }
+
+    /**
+     * Same as {@link #addRuleAsync}, but the mails already in the inbox are split into partitions evaluated
+     * in parallel on the pool, and the matching ones are moved to the folder at once.
+     *
+     * @return the progress of moving the mails already in the inbox
+     */
+    public RuleApplication addRuleInParallel(String accountName, String folderPath, String ruleDefinition,
+                                             int priority, ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool is invalid!");
+        }
+        return addRule(accountName, folderPath, ruleDefinition, priority,
+            (account, rule) -> account.addRuleInParallel(rule, pool));
+    }
+
+    private RuleApplication addRule(String accountName, String folderPath, String ruleDefinition, int priority,
+                                    BiFunction<AccountMail, RuleDefinition, RuleApplication> application) {
         if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
             throw new IllegalArgumentException("Account name is invalid!");
         }
@@ -161,18 +275,27 @@ public class Outlook implements MailClient {
         if (!(priority >= MIN_PRIORITY && priority <= MAX_PRIORITY)) {
             throw new IllegalArgumentException("Priority is not in range [1, 10]!");
         }
-        if (!accounts.containsKey(accountName)) {
+        AccountMail account = accounts.get(accountName);
+        if (account == null) {
             throw new AccountNotFoundException("Account is not found!");
         }
-        AccountMail account = accounts.get(accountName);
         if (!account.pathExists(folderPath)) {
             throw new FolderNotFoundException("Folder is not found!");
         }
+        long start = timed ? System.nanoTime() : 0;
         RuleDefinition rule = convertToRule(folderPath, priority, ruleDefinition);
+        if (timed) {
+            metrics.recordPhase(Phase.PARSE, System.nanoTime() - start);
+        }
         if (rule == null) {
             throw new RuleAlreadyDefinedException("Rule metadata is invalid!");
         }
-        account.addRule(rule);
+        return persist(() -> List.of(accountName), () -> {
+            RuleApplication started = application.apply(account, rule);
+            trackPending(started.completion());
+            return started;
+        },
+            started -> List.of(Operation.addRule(accountName, folderPath, ruleDefinition, priority)));
     }
 
     @Override
@@ -186,17 +309,130 @@ public class Outlook implements MailClient {
         if (mailContent == null || mailContent.isEmpty() || mailContent.isBlank()) {
             throw new IllegalArgumentException("Mail content is invalid!");
         }
-        if (!accounts.containsKey(accountName)) {
+        AccountMail receiver = accounts.get(accountName);
+        if (receiver == null) {
             throw new AccountNotFoundException("Account is not found!");
         }
         Mail mail = convertToMail(accountName, mailMetadata, mailContent);
+        persist(() -> List.of(accountName, mail.sender().name()), () -> {
+            AccountMail sender = senderOf(accountName, mail);
+            Mail stored = repository.intern(mail);
+            try {
+                receiver.receiveMail(stored);
+                sender.sendMail(stored);
+            } finally {
+                repository.release(stored);
+            }
+        }, () -> Operation.receiveMail(accountName, mailMetadata, mailContent));
+    }
+
+    /**
+     * Receives a batch of mails for a single account. The account is resolved once, the rules of the
+     * account are evaluated for the whole batch, and every affected folder is updated once.
+     * A mail that cannot be received does not abort the batch - its failure is reported in the result instead.
+     *
+     * @param accountName the recipient account
+     * @param mails       metadata and content of each mail, in the format expected by {@link #receiveMail}
+     * @return one result per mail, in iteration order
+     * @throws IllegalArgumentException if the account name is null, empty or blank, or the mails are null
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    public List<ReceiveResult> receiveMails(String accountName, Iterable<RawMail> mails) {
+        if (accountName == null || accountName.isBlank() || accountName.isEmpty()) {
+            throw new IllegalArgumentException("Account is invalid!");
+        }
+        if (mails == null) {
+            throw new IllegalArgumentException("Mails are invalid!");
+        }
         AccountMail receiver = accounts.get(accountName);
-        AccountMail sender = accounts.get(mail.sender().name());
-        if (sender.getAccount().name().equals(accountName)) {
+        if (receiver == null) {
+            throw new AccountNotFoundException("Account is not found!");
+        }
+        List<RawMail> rawMails = new ArrayList<>();
+        List<Mail> parsed = new ArrayList<>();
+        List<RuntimeException> failures = new ArrayList<>();
+        for (RawMail rawMail : mails) {
+            rawMails.add(rawMail);
+            try {
+                parsed.add(convertToReceivedMail(accountName, rawMail));
+                failures.add(null);
+            } catch (RuntimeException e) {
+                parsed.add(null);
+                failures.add(e);
+            }
+        }
+        List<Operation> journal = new ArrayList<>();
+        return persist(() -> accountsOf(accountName, parsed),
+            () -> receiveMails(receiver, accountName, rawMails, parsed, failures, journal), results -> journal);
+    }
+
+    private static List<String> accountsOf(String accountName, List<Mail> parsed) {
+        List<String> accountNames = new ArrayList<>();
+        accountNames.add(accountName);
+        for (Mail mail : parsed) {
+            if (mail != null) {
+                accountNames.add(mail.sender().name());
+            }
+        }
+        return accountNames;
+    }
+
+    /**
+     * @param parsed   the mails parsed from the raw ones, null for the ones that could not be
+     * @param failures why each of those could not be parsed
+     * @param journal  collects the operation of every received mail
+     */
+    private List<ReceiveResult> receiveMails(AccountMail receiver, String accountName, List<RawMail> rawMails,
+                                             List<Mail> parsed, List<RuntimeException> failures,
+                                             List<Operation> journal) {
+        List<ReceiveResult> results = new ArrayList<>();
+        List<Mail> received = new ArrayList<>();
+        Map<AccountMail, List<Mail>> sentBySender = new HashMap<>();
+        try {
+            for (int i = 0; i < rawMails.size(); i++) {
+                RawMail rawMail = rawMails.get(i);
+                if (parsed.get(i) == null) {
+                    results.add(ReceiveResult.rejected(failures.get(i)));
+                    continue;
+                }
+                try {
+                    Mail mail = parsed.get(i);
+                    AccountMail sender = accounts.get(mail.sender().name());
+                    if (sender == null) {
+                        throw new AccountNotFoundException("Sender account is not found!");
+                    }
+                    Mail stored = repository.intern(mail);
+                    received.add(stored);
+                    sentBySender.computeIfAbsent(sender, account -> new ArrayList<>()).add(stored);
+                    results.add(ReceiveResult.received(stored));
+                    journal.add(Operation.receiveMail(accountName, rawMail.metadata(), rawMail.content()));
+                } catch (RuntimeException e) {
+                    results.add(ReceiveResult.rejected(e));
+                }
+            }
+            receiver.receiveMails(received);
+            sentBySender.forEach(AccountMail::sendMails);
+        } finally {
+            repository.releaseAll(received);
+        }
+        return results;
+    }
+
+    private Mail convertToReceivedMail(String accountName, RawMail rawMail) {
+        if (rawMail == null) {
+            throw new IllegalArgumentException("Mail is invalid!");
+        }
+        if (rawMail.metadata() == null || rawMail.metadata().isEmpty() || rawMail.metadata().isBlank()) {
+            throw new IllegalArgumentException("Mail metadata is invalid!");
+        }
+        if (rawMail.content() == null || rawMail.content().isEmpty() || rawMail.content().isBlank()) {
+            throw new IllegalArgumentException("Mail content is invalid!");
+        }
+        Mail mail = convertToMail(accountName, rawMail.metadata(), rawMail.content());
+        if (mail.sender().name().equals(accountName)) {
             throw new IllegalArgumentException("Sender is invalid!");
         }
-        receiver.receiveMail(mail);
-        sender.sendMail(mail);
+        return mail;
     }
 
     @Override
@@ -207,18 +443,349 @@ public class Outlook implements MailClient {
         if (folderPath == null || folderPath.isEmpty() || folderPath.isBlank()) {
             throw new IllegalArgumentException("Folder path is invalid!");
         }
-        if (!accounts.containsKey(account)) {
+        AccountMail accountMail = accounts.get(account);
+        if (accountMail == null) {
             throw new AccountNotFoundException("Account is not found!");
         }
+        return accountMail.getMailsFromFolder(accountMail.getFolderHandle(folderPath));
+    }
+
+    /**
+     * Returns one page of the mails contained directly in the provided folder, newest received first.
+     * Pages are read straight from the folder, without copying it.
+     *
+     * @param account           name of the selected account
+     * @param folderPath        full path of the folder
+     * @param pageSize          maximum number of mails in the page
+     * @param continuationToken token of the previous page, or null for the first page
+     * @return the page and the token for the next one
+     * @throws IllegalArgumentException if any of the string parameters is null, empty or blank,
+     *                                  the page size is not positive, or the continuation token is invalid
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws FolderNotFoundException  if the folder does not exist
+     */
+    public MailPage getMailsFromFolder(String account, String folderPath, int pageSize, String continuationToken) {
+        if (account == null || account.isEmpty() || account.isBlank()) {
+            throw new IllegalArgumentException("Account is invalid!");
+        }
+        if (folderPath == null || folderPath.isEmpty() || folderPath.isBlank()) {
+            throw new IllegalArgumentException("Folder path is invalid!");
+        }
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive!");
+        }
         AccountMail accountMail = accounts.get(account);
-        if (!accountMail.pathExists(folderPath)) {
-            throw new FolderNotFoundException("Folder is not found!");
+        if (accountMail == null) {
+            throw new AccountNotFoundException("Account is not found!");
+        }
+        return accountMail.getMailsPage(accountMail.getFolderHandle(folderPath), pageSize, continuationToken);
+    }
+
+    /**
+     * @param account    name of the selected account
+     * @param folderPath full path of the folder
+     * @param count      maximum number of mails to return
+     * @return the most recently received mails contained directly in the folder, newest first
+     * @throws IllegalArgumentException if any of the string parameters is null, empty or blank,
+     *                                  or the count is negative
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws FolderNotFoundException  if the folder does not exist
+     */
+    public List<Mail> getNewestMails(String account, String folderPath, int count) {
+        if (account == null || account.isEmpty() || account.isBlank()) {
+            throw new IllegalArgumentException("Account is invalid!");
+        }
+        if (folderPath == null || folderPath.isEmpty() || folderPath.isBlank()) {
+            throw new IllegalArgumentException("Folder path is invalid!");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative!");
+        }
+        AccountMail accountMail = accounts.get(account);
+        if (accountMail == null) {
+            throw new AccountNotFoundException("Account is not found!");
+        }
+        return accountMail.getNewestMails(accountMail.getFolderHandle(folderPath), count);
+    }
+
+    /**
+     * @param account    name of the selected account
+     * @param folderPath full path of the folder
+     * @param from       start of the period, inclusive
+     * @param to         end of the period, inclusive
+     * @return the mails contained directly in the folder and received in the period, newest first
+     * @throws IllegalArgumentException if any of the parameters is null, empty or blank,
+     *                                  or the period ends before it starts
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws FolderNotFoundException  if the folder does not exist
+     */
+    public List<Mail> getMailsReceivedBetween(String account, String folderPath,
+                                              LocalDateTime from, LocalDateTime to) {
+        if (account == null || account.isEmpty() || account.isBlank()) {
+            throw new IllegalArgumentException("Account is invalid!");
+        }
+        if (folderPath == null || folderPath.isEmpty() || folderPath.isBlank()) {
+            throw new IllegalArgumentException("Folder path is invalid!");
+        }
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("Period is invalid!");
+        }
+        AccountMail accountMail = accounts.get(account);
+        if (accountMail == null) {
+            throw new AccountNotFoundException("Account is not found!");
+        }
+        return accountMail.getMailsReceivedBetween(accountMail.getFolderHandle(folderPath), from, to);
+    }
+
+    /**
+     * Searches the received and sent mails of the account. Every word of the query must appear in the
+     * subject or the body, case-insensitively; "quoted phrases" must appear as consecutive words,
+     * and {@code from:<email>} and {@code to:<email>} restrict the sender and the recipients.
+     *
+     * @param account name of the selected account
+     * @param query   the search query
+     * @param limit   maximum number of results
+     * @return the matching mails, newest received first
+     * @throws IllegalArgumentException if any of the parameters is null, empty or blank, or limit is not positive
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    public List<Mail> search(String account, String query, int limit) {
+        if (account == null || account.isEmpty() || account.isBlank()) {
+            throw new IllegalArgumentException("Account is invalid!");
+        }
+        if (query == null || query.isEmpty() || query.isBlank()) {
+            throw new IllegalArgumentException("Query is invalid!");
         }
-        return accountMail.getMailsFromFolder(folderPath);
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive!");
+        }
+        AccountMail accountMail = accounts.get(account);
+        if (accountMail == null) {
+            throw new AccountNotFoundException("Account is not found!");
+        }
+        return accountMail.search(query, limit);
     }
 
     @Override
     public void sendMail(String accountName, String mailMetadata, String mailContent) {
+        Mail parsed = parseMail(accountName, mailMetadata, mailContent);
+        persist(accountsOf(accountName, parsed), () -> {
+            Mail mail = storeSentMail(accountName, parsed);
+            try {
+                long start = timed ? System.nanoTime() : 0;
+                for (AccountMail receiver : receiversOf(accounts.get(accountName), mail)) {
+                    receiver.receiveMail(mail);
+                }
+                if (timed) {
+                    metrics.recordPhase(Phase.FAN_OUT, System.nanoTime() - start);
+                }
+            } finally {
+                repository.release(mail);
+            }
+        }, () -> Operation.sendMail(accountName, mailMetadata, mailContent));
+    }
+
+    /**
+     * Same as {@link #sendMail}, but the mail is only stored in the sender's "/sent" folder before returning;
+     * the deliveries to the recipients are handed to the configured {@link ParallelDelivery}.
+     *
+     * @return a future completed once every recipient has received the mail
+     * @throws IllegalArgumentException if any of the parameters is null, empty or blank
+     * @throws AccountNotFoundException if the sender account does not exist
+     */
+    public CompletableFuture<Void> sendMailAsync(String accountName, String mailMetadata, String mailContent) {
+        Mail parsed = parseMail(accountName, mailMetadata, mailContent);
+        return persist(accountsOf(accountName, parsed), () -> {
+            Mail mail = storeSentMail(accountName, parsed);
+            if (parallelDelivery == null) {
+                try {
+                    for (AccountMail receiver : receiversOf(accounts.get(accountName), mail)) {
+                        receiver.receiveMail(mail);
+                    }
+                } finally {
+                    repository.release(mail);
+                }
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            CompletableFuture<Void> delivery;
+            try {
+                delivery = parallelDelivery.deliver(receiversOf(accounts.get(accountName), mail), mail)
+                    .whenComplete((ignored, failure) -> repository.release(mail));
+            } catch (RuntimeException e) {
+                repository.release(mail);
+                throw e;
+            }
+            trackPending(delivery);
+            return delivery;
+        }, delivery -> List.of(Operation.sendMail(accountName, mailMetadata, mailContent)));
+    }
+
+    /**
+     * Delivers a mail sent by an account of another client, e.g. another shard of a
+     * {@link bg.sofia.uni.fmi.mjt.mail.shard.ShardedMailClient}, to accounts of this one, by their rules.
+     * The sender needs no account here, and the mail is not stored in any "/sent" folder.
+     *
+     * @throws IllegalArgumentException if any of the parameters is null, empty or blank
+     * @throws AccountNotFoundException if any of the accounts does not exist
+     */
+    public void deliverMail(Account sender, Collection<String> accountNames, String mailMetadata,
+                            String mailContent) {
+        if (sender == null) {
+            throw new IllegalArgumentException("Sender is invalid!");
+        }
+        if (accountNames == null || accountNames.isEmpty()) {
+            throw new IllegalArgumentException("Accounts are invalid!");
+        }
+        if (mailMetadata == null || mailMetadata.isEmpty() || mailMetadata.isBlank()) {
+            throw new IllegalArgumentException("Mail metadata is invalid!");
+        }
+        if (mailContent == null || mailContent.isEmpty() || mailContent.isBlank()) {
+            throw new IllegalArgumentException("Mail content is invalid!");
+        }
+        List<AccountMail> receivers = new ArrayList<>(accountNames.size());
+        for (String accountName : accountNames) {
+            AccountMail receiver = accountName == null ? null : accounts.get(accountName);
+            if (receiver == null) {
+                throw new AccountNotFoundException("Account is not found!");
+            }
+            receivers.add(receiver);
+        }
+        Mail parsed = convertToMail(mailMetadata, mailContent, metadata -> sender);
+        persist(() -> accountNames, () -> {
+            Mail mail = repository.intern(parsed);
+            try {
+                for (AccountMail receiver : receivers) {
+                    receiver.receiveMail(mail);
+                }
+            } finally {
+                repository.release(mail);
+            }
+        }, () -> Operation.deliverMail(sender, accountNames, mailMetadata, mailContent));
+    }
+
+    /**
+     * Stores a mail in the sender's "/sent" folder only, e.g. when its receiver is an account of another client.
+     *
+     * @throws IllegalArgumentException if any of the parameters is null, empty or blank
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    public void addSentMail(String accountName, String mailMetadata, String mailContent) {
+        Mail parsed = parseMail(accountName, mailMetadata, mailContent);
+        persist(() -> List.of(accountName), () -> {
+            repository.release(storeSentMail(accountName, parsed));
+        }, () -> Operation.addSentMail(accountName, mailMetadata, mailContent));
+    }
+
+    /**
+     * @return the folders, rules and mails of the account, e.g. to move it to another client with
+     * {@link #importAccount}
+     * @throws IllegalArgumentException if the account name is null, empty or blank
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    public AccountSnapshot exportAccount(String accountName) {
+        if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
+            throw new IllegalArgumentException("Account name is invalid!");
+        }
+        AccountMail accountMail = accounts.get(accountName);
+        if (accountMail == null) {
+            throw new AccountNotFoundException("Account is not found!");
+        }
+        return accountMail.snapshot();
+    }
+
+    /**
+     * Adds an account exported from another client, with all its folders, rules and mails.
+     * A persistent client logs the whole account in a single record, so the import is replayed as it was made.
+     *
+     * @throws IllegalArgumentException      if the snapshot is null
+     * @throws AccountAlreadyExistsException if an account with the same name or email exists
+     */
+    public void importAccount(AccountSnapshot snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("Snapshot is invalid!");
+        }
+        persist(() -> {
+            if (accounts.containsKey(snapshot.account().name().toLowerCase())
+                || emails.containsKey(snapshot.account().emailAddress())) {
+                throw new AccountAlreadyExistsException("Account already exists!");
+            }
+            restoreAccount(detached(snapshot));
+            return null;
+        }, ignored -> List.of(Operation.importAccount(snapshot)));
+    }
+
+    /**
+     * Removes the account with all its folders, rules and mails, e.g. once it is moved to another client.
+     *
+     * @throws IllegalArgumentException if the account name is null, empty or blank
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    public void removeAccount(String accountName) {
+        if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
+            throw new IllegalArgumentException("Account name is invalid!");
+        }
+        persist(() -> {
+            AccountMail removed = accounts.remove(accountName.toLowerCase());
+            if (removed == null) {
+                throw new AccountNotFoundException("Account is not found!");
+            }
+            emails.remove(removed.getAccount().emailAddress());
+            removed.remove();
+        }, () -> Operation.removeAccount(accountName));
+    }
+
+    /**
+     * @return the snapshot with its mails stripped of the ids and bodies of the client it was taken from,
+     * so they are stored anew by this one
+     */
+    private static AccountSnapshot detached(AccountSnapshot snapshot) {
+        Map<String, List<Mail>> mails = new LinkedHashMap<>();
+        snapshot.mails().forEach((path, folderMails) -> mails.put(path, folderMails.stream()
+            .map(mail -> new Mail(mail.sender(), mail.recipients(), mail.subject(), mail.body(), mail.received()))
+            .toList()));
+        return new AccountSnapshot(snapshot.account(), snapshot.folderPaths(), snapshot.rules(), mails);
+    }
+
+    private void restoreAccount(AccountSnapshot snapshot) {
+        AccountMail accountMail = AccountMail.restore(snapshot, repository, metrics);
+        accounts.put(snapshot.account().name().toLowerCase(), accountMail);
+        emails.put(snapshot.account().emailAddress(), accountMail);
+    }
+
+    /**
+     * @return the stored mail, which must be released once it is delivered
+     */
+    private Mail storeSentMail(String accountName, Mail parsed) {
+        Mail mail = repository.intern(parsed);
+        try {
+            accounts.get(accountName).sendMail(mail);
+        } catch (RuntimeException e) {
+            repository.release(mail);
+            throw e;
+        }
+        return mail;
+    }
+
+    /**
+     * Stores the mail once, so that it is passed to every account it goes to as the stored mail.
+     *
+     * @return the stored mail, which must be given back with {@link #release}
+     */
+    Mail intern(Mail mail) {
+        return repository.intern(mail);
+    }
+
+    void release(Mail mail) {
+        repository.release(mail);
+    }
+
+    /**
+     * Validates the parameters of a mail sent by or to the account, and converts them to the mail.
+     *
+     * @throws IllegalArgumentException if any of the parameters is null, empty or blank
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    Mail parseMail(String accountName, String mailMetadata, String mailContent) {
         if (accountName == null || accountName.isBlank() || accountName.isEmpty()) {
             throw new IllegalArgumentException("Account is invalid!");
         }
@@ -231,15 +798,192 @@ public class Outlook implements MailClient {
         if (!accounts.containsKey(accountName)) {
             throw new AccountNotFoundException("Account is not found!");
         }
-        AccountMail accountMail = accounts.get(accountName);
-        Mail mail = convertToMail(accountName, mailMetadata, mailContent);
-        accountMail.sendMail(mail);
-        for (Map.Entry<String, AccountMail> accountMailEntry : accounts.entrySet()) {
-            if (!accountMailEntry.getKey().equals(accountName) &&
-                (mail.recipients().contains(accountMailEntry.getValue().getAccount().emailAddress())
-                    || mail.recipients().size() == 0)) {
-                accountMailEntry.getValue().receiveMail(mail);
+        return convertToMail(accountName, mailMetadata, mailContent);
+    }
+
+    /**
+     * @return the account, or null if it does not exist
+     */
+    AccountMail accountMail(String accountName) {
+        return accounts.get(accountName);
+    }
+
+    /**
+     * @return the account that sent the mail received by the other one
+     * @throws IllegalArgumentException if the mail was sent by the receiver itself
+     */
+    AccountMail senderOf(String receiverName, Mail mail) {
+        AccountMail sender = accounts.get(mail.sender().name());
+        if (sender.getAccount().name().equals(receiverName)) {
+            throw new IllegalArgumentException("Sender is invalid!");
+        }
+        return sender;
+    }
+
+    /**
+     * @return the names of the sender and of the accounts the mail goes to, or null if it goes to all accounts,
+     * so that it is sent while no other operation is applied
+     */
+    Supplier<Collection<String>> accountsOf(String senderName, Mail mail) {
+        if (mail.recipients().isEmpty()) {
+            return null;
+        }
+        return () -> {
+            List<String> accountNames = new ArrayList<>(mail.recipients().size() + 1);
+            accountNames.add(senderName);
+            for (AccountMail receiver : receiversOf(accounts.get(senderName), mail)) {
+                accountNames.add(receiver.getAccount().name());
+            }
+            return accountNames;
+        };
+    }
+
+    Collection<AccountMail> receiversOf(AccountMail sender, Mail mail) {
+        if (mail.recipients().isEmpty()) {
+            return broadcastReceivers(sender);
+        }
+        List<AccountMail> receivers = new ArrayList<>(mail.recipients().size());
+        for (String recipient : mail.recipients()) {
+            AccountMail receiver = emails.get(recipient);
+            if (receiver != null && receiver != sender) {
+                receivers.add(receiver);
+            }
+        }
+        return receivers;
+    }
+
+    private Collection<AccountMail> broadcastReceivers(AccountMail sender) {
+        List<AccountMail> receivers = new ArrayList<>(accounts.size());
+        for (AccountMail receiver : accounts.values()) {
+            if (receiver != sender) {
+                receivers.add(receiver);
+            }
+        }
+        return receivers;
+    }
+
+    /**
+     * Makes snapshots wait for work that continues after its operation is logged.
+     */
+    private void trackPending(CompletableFuture<Void> work) {
+        if (store != null && !work.isDone()) {
+            pendingWork.add(work);
+            work.whenComplete((ignored, failure) -> pendingWork.remove(work));
+        }
+    }
+
+    /**
+     * Logs the operation that delivers a mail, and only then starts the delivery, as starting it may wait
+     * for room in a queue, which must not hold up the log. Snapshots wait for the delivery from the moment
+     * its operation is logged.
+     *
+     * @param accountNames the names of the accounts of the delivery, or null if it goes to all accounts
+     * @param delivery     resolves the accounts of the delivery while the operation is logged, and returns
+     *                     what starts it
+     */
+    CompletableFuture<Void> persistDelivery(Supplier<Collection<String>> accountNames,
+                                            Supplier<Supplier<CompletableFuture<Void>>> delivery,
+                                            Supplier<Operation> record) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Supplier<CompletableFuture<Void>> start;
+        try {
+            start = persist(accountNames, () -> {
+                Supplier<CompletableFuture<Void>> resolved = delivery.get();
+                trackPending(done);
+                return resolved;
+            }, resolved -> List.of(record.get()));
+        } catch (RuntimeException e) {
+            done.completeExceptionally(e);
+            throw e;
+        }
+        try {
+            start.get().whenComplete((ignored, failure) -> {
+                if (failure == null) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(failure);
+                }
+            });
+        } catch (RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    private void persist(Runnable operation, Supplier<Operation> record) {
+        persist(() -> {
+            operation.run();
+            return null;
+        }, ignored -> List.of(record.get()));
+    }
+
+    private <T> T persist(Supplier<T> operation, Function<T, List<Operation>> records) {
+        return store == null ? operation.get() : store.apply(operation, records);
+    }
+
+    private void persist(Supplier<Collection<String>> accountNames, Runnable operation, Supplier<Operation> record) {
+        persist(accountNames, () -> {
+            operation.run();
+            return null;
+        }, ignored -> List.of(record.get()));
+    }
+
+    /**
+     * @param accountNames the names of the accounts the operation changes, or null if it may change any account,
+     *                     so that it is applied while no other operation is
+     */
+    private <T> T persist(Supplier<Collection<String>> accountNames, Supplier<T> operation,
+                          Function<T, List<Operation>> records) {
+        if (store == null) {
+            return operation.get();
+        }
+        return accountNames == null ? store.apply(operation, records) : store.apply(accountNames, operation, records);
+    }
+
+    /**
+     * Connects the accounts of the client to its {@link MailStore}.
+     */
+    private class StoredState implements MailStore.State {
+        @Override
+        public void restore(List<AccountSnapshot> snapshots) {
+            for (AccountSnapshot snapshot : snapshots) {
+                restoreAccount(snapshot);
+            }
+        }
+
+        @Override
+        public void replay(Operation operation) {
+            switch (operation.type()) {
+                case ADD_ACCOUNT -> addNewAccount(operation.argument(0), operation.argument(1));
+                case CREATE_FOLDER -> createFolder(operation.argument(0), operation.argument(1));
+                case ADD_RULE -> addRule(operation.argument(0), operation.argument(1), operation.argument(2),
+                    Integer.parseInt(operation.argument(3)));
+                case RECEIVE_MAIL -> receiveMail(operation.argument(0), operation.argument(1), operation.argument(2));
+                case SEND_MAIL -> sendMail(operation.argument(0), operation.argument(1), operation.argument(2));
+                case DELIVER_MAIL -> deliverMail(new Account(operation.argument(0), operation.argument(1)),
+                    operation.arguments().subList(4, operation.arguments().size()), operation.argument(2),
+                    operation.argument(3));
+                case ADD_SENT_MAIL -> addSentMail(operation.argument(0), operation.argument(1),
+                    operation.argument(2));
+                case REMOVE_ACCOUNT -> removeAccount(operation.argument(0));
+                case IMPORT_ACCOUNT -> importAccount(operation.importedAccount());
+            }
+        }
+
+        @Override
+        public void quiesce() {
+            CompletableFuture.allOf(pendingWork.toArray(CompletableFuture[]::new))
+                .handle((ignored, failure) -> null).join();
+        }
+
+        @Override
+        public List<AccountSnapshot> capture() {
+            quiesce();
+            List<AccountSnapshot> snapshots = new ArrayList<>(accounts.size());
+            for (AccountMail accountMail : accounts.values()) {
+                snapshots.add(accountMail.snapshot());
             }
+            return snapshots;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,4 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+public record RawMail(String metadata, String content) {
+}
@@ -0,0 +1,19 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+/**
+ * Outcome of receiving a single mail of a batch: either the stored mail or the reason it was rejected.
+ * The stored mail is the instance kept in the folders of the receiver and the sender.
+ */
+public record ReceiveResult(Mail mail, RuntimeException failure) {
+    public static ReceiveResult received(Mail mail) {
+        return new ReceiveResult(mail, null);
+    }
+
+    public static ReceiveResult rejected(RuntimeException failure) {
+        return new ReceiveResult(null, failure);
+    }
+
+    public boolean isReceived() {
+        return failure == null;
+    }
+}
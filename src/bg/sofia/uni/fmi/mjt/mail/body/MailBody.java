@@ -0,0 +1,61 @@
+package bg.sofia.uni.fmi.mjt.mail.body;
+
+/**
+ * Content of a mail, either kept on the heap or decoded on demand from a {@link MappedBodyStore}.
+ * The hash of the text is computed once when the body is stored, so bodies can be compared
+ * without being decoded unless their hashes collide. Bodies are compared only when a new mail is first
+ * stored, to find a stored copy of it; stored mails are compared by their ids, never by their bodies.
+ */
+public abstract class MailBody {
+    private final int hash;
+
+    MailBody(int hash) {
+        this.hash = hash;
+    }
+
+    public static MailBody of(String text) {
+        return text == null ? null : new HeapBody(text);
+    }
+
+    /**
+     * @return the text of the body, decoded if it is not kept on the heap
+     */
+    public abstract String text();
+
+    boolean sameLocation(MailBody other) {
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof MailBody other && hash == other.hash
+            && (sameLocation(other) || text().equals(other.text()));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return text();
+    }
+
+    private static final class HeapBody extends MailBody {
+        private final String text;
+
+        HeapBody(String text) {
+            super(text.hashCode());
+            this.text = text;
+        }
+
+        @Override
+        public String text() {
+            return text;
+        }
+    }
+}
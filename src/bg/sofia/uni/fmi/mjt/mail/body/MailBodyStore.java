@@ -0,0 +1,16 @@
+package bg.sofia.uni.fmi.mjt.mail.body;
+
+/**
+ * Decides where the bodies of the mails of a client are kept.
+ */
+public interface MailBodyStore {
+    /**
+     * Keeps every body as a string on the heap.
+     */
+    MailBodyStore HEAP = body -> body;
+
+    /**
+     * @return the body as kept by this store
+     */
+    MailBody store(MailBody body);
+}
@@ -0,0 +1,142 @@
+package bg.sofia.uni.fmi.mjt.mail.body;
+
+import bg.sofia.uni.fmi.mjt.mail.exceptions.StorageException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps mail bodies off the heap, in append-only segment files mapped into memory.
+ * A stored body is only a segment, offset and length; its text is decoded every time it is read,
+ * and the operating system pages the segments in and out as needed. Delivering a mail decodes its body
+ * once, to index it for search and to evaluate body rules, and the decoded text is only kept while
+ * the mail is among the recently delivered ones.
+ * The segments are scratch space for a running client - they are deleted on {@link #close()} -
+ * while durability is the job of the {@link bg.sofia.uni.fmi.mjt.mail.store.MailStore}.
+ */
+public class MappedBodyStore implements MailBodyStore, AutoCloseable {
+    private static final String SEGMENT_FORMAT = "bodies-%06d.seg";
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final Lock lock = new ReentrantLock();
+    private MappedByteBuffer current;
+
+    public MappedBodyStore(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize size of a segment file in bytes; larger bodies get a segment of their own
+     * @throws StorageException if the directory cannot be created
+     */
+    public MappedBodyStore(Path directory, int segmentSize) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory is invalid!");
+        }
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive!");
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new StorageException("Body directory cannot be created!", e);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @throws StorageException if a new segment cannot be created
+     */
+    @Override
+    public MailBody store(MailBody body) {
+        if (body == null || body instanceof MappedBody mapped && mapped.store == this) {
+            return body;
+        }
+        byte[] bytes = body.text().getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            if (current == null || current.remaining() < bytes.length) {
+                current = newSegment(Math.max(segmentSize, bytes.length));
+            }
+            int offset = current.position();
+            current.put(bytes);
+            return new MappedBody(this, segments.size() - 1, offset, bytes.length, body.hashCode());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    String read(int segment, int offset, int length) {
+        byte[] bytes = new byte[length];
+        segments.get(segment).get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private MappedByteBuffer newSegment(int size) {
+        Path path = directory.resolve(String.format(SEGMENT_FORMAT, segments.size()));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new StorageException("Body segment cannot be created!", e);
+        }
+    }
+
+    /**
+     * Deletes the segment files. Bodies already handed out stay readable until they are collected.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                Files.deleteIfExists(directory.resolve(String.format(SEGMENT_FORMAT, i)));
+            }
+        } catch (IOException e) {
+            throw new StorageException("Body segments cannot be deleted!", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class MappedBody extends MailBody {
+        private final MappedBodyStore store;
+        private final int segment;
+        private final int offset;
+        private final int length;
+
+        MappedBody(MappedBodyStore store, int segment, int offset, int length, int hash) {
+            super(hash);
+            this.store = store;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public String text() {
+            return store.read(segment, offset, length);
+        }
+
+        @Override
+        boolean sameLocation(MailBody other) {
+            return other instanceof MappedBody mapped && store == mapped.store && segment == mapped.segment
+                && offset == mapped.offset;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.mail.delivery;
+
+public enum Backpressure {
+    /**
+     * A caller waits for room in a full queue.
+     */
+    BLOCK,
+
+    /**
+     * Work for a full queue is rejected: its future fails with a
+     * {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    REJECT
+}
@@ -0,0 +1,13 @@
+package bg.sofia.uni.fmi.mjt.mail.delivery;
+
+public enum DeliveryOrdering {
+    /**
+     * Mails are delivered to each account in the order they were sent.
+     */
+    PER_ACCOUNT_FIFO,
+
+    /**
+     * Deliveries to the same account may run in any order.
+     */
+    UNORDERED
+}
@@ -0,0 +1,64 @@
+package bg.sofia.uni.fmi.mjt.mail.delivery;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tree.AccountMail;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Delivers a mail to many accounts at once on a fork-join pool.
+ * With {@link DeliveryOrdering#PER_ACCOUNT_FIFO} the deliveries to a single account are chained,
+ * so an account sees mails in the order they were handed to this object even though
+ * different accounts are served in parallel.
+ */
+public class ParallelDelivery implements AutoCloseable {
+    private final ExecutorService executor;
+    private final DeliveryOrdering ordering;
+    private final Map<AccountMail, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+
+    public ParallelDelivery(int parallelism, DeliveryOrdering ordering) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive!");
+        }
+        if (ordering == null) {
+            throw new IllegalArgumentException("Ordering is invalid!");
+        }
+        this.executor = new ForkJoinPool(parallelism);
+        this.ordering = ordering;
+    }
+
+    /**
+     * @return a future completed once every receiver has processed the mail, or completed exceptionally
+     * if any of the deliveries failed
+     */
+    public CompletableFuture<Void> deliver(Collection<AccountMail> receivers, Mail mail) {
+        CompletableFuture<?>[] deliveries = new CompletableFuture<?>[receivers.size()];
+        int i = 0;
+        for (AccountMail receiver : receivers) {
+            deliveries[i++] = deliver(receiver, mail);
+        }
+        return CompletableFuture.allOf(deliveries);
+    }
+
+    private CompletableFuture<Void> deliver(AccountMail receiver, Mail mail) {
+        Runnable delivery = () -> receiver.receiveMail(mail);
+        if (ordering == DeliveryOrdering.UNORDERED) {
+            return CompletableFuture.runAsync(delivery, executor);
+        }
+        CompletableFuture<Void> future = pending.compute(receiver, (account, previous) -> previous == null
+            ? CompletableFuture.runAsync(delivery, executor)
+            : previous.handle((ignored, failure) -> null).thenRunAsync(delivery, executor));
+        future.whenComplete((ignored, failure) -> pending.remove(receiver, future));
+        return future;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
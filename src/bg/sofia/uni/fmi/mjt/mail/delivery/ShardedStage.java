@@ -0,0 +1,150 @@
+package bg.sofia.uni.fmi.mjt.mail.delivery;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * One stage of a pipeline: a fixed number of shards, each a single thread draining its own bounded queue.
+ * Work is assigned to a shard by its key, so the work for one key runs one item at a time, in the order
+ * it was submitted, without any locking of its own.
+ * Submissions hold a shared lock while they queue their work, and closing takes it exclusively, so no work
+ * is queued once the shards are told to stop.
+ */
+public class ShardedStage implements AutoCloseable {
+    private static final Runnable STOP = () -> { };
+
+    private final Shard[] shards;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    /**
+     * @param name     prefix of the names of the shard threads
+     * @param shards   the number of shards
+     * @param capacity the number of work items each shard can queue
+     */
+    public ShardedStage(String name, int shards, int capacity) {
+        if (name == null || name.isEmpty() || name.isBlank()) {
+            throw new IllegalArgumentException("Name is invalid!");
+        }
+        if (shards < 1) {
+            throw new IllegalArgumentException("Shards must be positive!");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive!");
+        }
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(name + "-" + i, capacity);
+        }
+    }
+
+    /**
+     * Queues the work on the shard of the key.
+     *
+     * @return a future completed with the result of the work, or exceptionally with its failure; with
+     * {@link Backpressure#REJECT}, also if the queue of the shard is full
+     */
+    public <T> CompletableFuture<T> submit(Object key, Supplier<T> work, Backpressure backpressure) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                result.complete(work.get());
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        };
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            if (closed) {
+                result.completeExceptionally(new RejectedExecutionException("Stage is closed!"));
+                return result;
+            }
+            BlockingQueue<Runnable> queue = shardOf(key).queue;
+            if (backpressure == Backpressure.REJECT) {
+                if (!queue.offer(task)) {
+                    result.completeExceptionally(new RejectedExecutionException("Stage is full!"));
+                }
+                return result;
+            }
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(new RejectedExecutionException("Interrupted while waiting for room!", e));
+        } finally {
+            read.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of work items waiting in all the shards
+     */
+    public int queued() {
+        int queued = 0;
+        for (Shard shard : shards) {
+            queued += shard.queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * Rejects new work, and waits for the queued work to finish.
+     */
+    @Override
+    public void close() {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            write.unlock();
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.queue.put(STOP);
+            }
+            for (Shard shard : shards) {
+                shard.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Shard shardOf(Object key) {
+        int hash = key == null ? 0 : key.hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> Short.SIZE), shards.length)];
+    }
+
+    private static class Shard {
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+
+        Shard(String name, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this::run, name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void run() {
+            try {
+                for (Runnable task = queue.take(); task != STOP; task = queue.take()) {
+                    task.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the measurements in memory, in lock-free counters: per rule, its evaluations, hits and
+ * evaluation time, per account, a histogram of its delivery latencies, and per phase of an operation,
+ * a histogram of its latencies. Every phase is also reported as a JFR event.
+ * The accounts are identified by their email addresses.
+ */
+public class CountingMailMetrics implements MailMetrics {
+    private final Map<String, Map<RuleDefinition, RuleCounters>> rules = new ConcurrentHashMap<>();
+    private final Map<String, DeliveryCounters> deliveries = new ConcurrentHashMap<>();
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+
+    public CountingMailMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public RuleRecorder ruleRecorder(Account account, RuleDefinition rule) {
+        return rules.computeIfAbsent(account.emailAddress(), email -> new ConcurrentHashMap<>())
+            .computeIfAbsent(rule, r -> new RuleCounters());
+    }
+
+    @Override
+    public DeliveryRecorder deliveryRecorder(Account account) {
+        return deliveries.computeIfAbsent(account.emailAddress(), email -> new DeliveryCounters());
+    }
+
+    @Override
+    public void recordPhase(Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+        MailPhaseEvent event = new MailPhaseEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase.name();
+            event.time = nanos;
+            event.commit();
+        }
+    }
+
+    public LatencyHistogram phaseLatency(Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * @return the statistics of every rule of the account, or an empty map if the account has none
+     */
+    public Map<RuleDefinition, RuleStatistics> ruleStatistics(String email) {
+        Map<RuleDefinition, RuleStatistics> statistics = new LinkedHashMap<>();
+        rules.getOrDefault(email, Map.of()).forEach((rule, counters) -> statistics.put(rule, counters.snapshot()));
+        return statistics;
+    }
+
+    /**
+     * @return the latencies of the deliveries to the account, or null if the account is unknown
+     */
+    public LatencyHistogram deliveryLatency(String email) {
+        DeliveryCounters counters = deliveries.get(email);
+        return counters == null ? null : counters.latency;
+    }
+
+    /**
+     * @return the number of mails delivered to the account
+     */
+    public long deliveredMails(String email) {
+        DeliveryCounters counters = deliveries.get(email);
+        return counters == null ? 0 : counters.mails.sum();
+    }
+
+    private static class RuleCounters implements RuleRecorder {
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        @Override
+        public void recordEvaluation(boolean hit, long nanos) {
+            evaluations.increment();
+            if (hit) {
+                hits.increment();
+            }
+            this.nanos.add(nanos);
+        }
+
+        RuleStatistics snapshot() {
+            return new RuleStatistics(evaluations.sum(), hits.sum(), nanos.sum());
+        }
+    }
+
+    private static class DeliveryCounters implements DeliveryRecorder {
+        private final LongAdder mails = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        @Override
+        public void recordDelivery(int mails, long nanos) {
+            this.mails.add(mails);
+            latency.record(nanos);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.MailClient;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Decorates a mail client with the latency of every call of its methods: each call is recorded in a
+ * histogram per method and reported as a JFR event. The phases the calls go through are recorded by
+ * the {@link CountingMailMetrics} the decorated client was created with, if any.
+ * The statistics can be read directly or through JMX, once {@link #registerMBean registered}.
+ */
+public class InstrumentedMailClient implements MailClient, MailClientStatisticsMXBean {
+    private static final String DOMAIN = "bg.sofia.uni.fmi.mjt.mail";
+
+    private final MailClient client;
+    private final CountingMailMetrics metrics;
+    private final Map<Operation, OperationCounters> operations = new EnumMap<>(Operation.class);
+    private final long started = System.nanoTime();
+
+    public InstrumentedMailClient(MailClient client) {
+        this(client, null);
+    }
+
+    /**
+     * @param client  the decorated client
+     * @param metrics the metrics the decorated client records its phases in, or null if it records none
+     */
+    public InstrumentedMailClient(MailClient client, CountingMailMetrics metrics) {
+        if (client == null) {
+            throw new IllegalArgumentException("Client is invalid!");
+        }
+        this.client = client;
+        this.metrics = metrics;
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationCounters());
+        }
+    }
+
+    @Override
+    public Account addNewAccount(String accountName, String email) {
+        return measure(Operation.ADD_NEW_ACCOUNT, accountName, () -> client.addNewAccount(accountName, email));
+    }
+
+    @Override
+    public void createFolder(String accountName, String path) {
+        measure(Operation.CREATE_FOLDER, accountName, () -> {
+            client.createFolder(accountName, path);
+            return null;
+        });
+    }
+
+    @Override
+    public void addRule(String accountName, String folderPath, String ruleDefinition, int priority) {
+        measure(Operation.ADD_RULE, accountName, () -> {
+            client.addRule(accountName, folderPath, ruleDefinition, priority);
+            return null;
+        });
+    }
+
+    @Override
+    public void receiveMail(String accountName, String mailMetadata, String mailContent) {
+        measure(Operation.RECEIVE_MAIL, accountName, () -> {
+            client.receiveMail(accountName, mailMetadata, mailContent);
+            return null;
+        });
+    }
+
+    @Override
+    public Collection<Mail> getMailsFromFolder(String account, String folderPath) {
+        return measure(Operation.GET_MAILS_FROM_FOLDER, account, () -> client.getMailsFromFolder(account, folderPath));
+    }
+
+    @Override
+    public void sendMail(String accountName, String mailMetadata, String mailContent) {
+        measure(Operation.SEND_MAIL, accountName, () -> {
+            client.sendMail(accountName, mailMetadata, mailContent);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, OperationStatistics> getOperations() {
+        long elapsed = System.nanoTime() - started;
+        Map<String, OperationStatistics> statistics = new LinkedHashMap<>();
+        operations.forEach((operation, counters) -> statistics.put(operation.method,
+            new OperationStatistics(counters.latency, counters.errors.sum(), elapsed)));
+        return statistics;
+    }
+
+    @Override
+    public Map<String, OperationStatistics> getPhases() {
+        Map<String, OperationStatistics> statistics = new LinkedHashMap<>();
+        if (metrics != null) {
+            long elapsed = System.nanoTime() - started;
+            for (Phase phase : Phase.values()) {
+                statistics.put(phase.name(), new OperationStatistics(metrics.phaseLatency(phase), 0, elapsed));
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Registers the statistics in the platform MBean server.
+     *
+     * @return the name they are registered under, of type MailClient in the package's domain
+     * @throws IllegalArgumentException if the name is null, empty or blank
+     * @throws IllegalStateException    if the MBean cannot be registered, e.g. the name is taken
+     */
+    public ObjectName registerMBean(String name) {
+        if (name == null || name.isEmpty() || name.isBlank()) {
+            throw new IllegalArgumentException("Name is invalid!");
+        }
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=MailClient,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("MBean cannot be registered!", e);
+        }
+    }
+
+    private <T> T measure(Operation operation, String account, Supplier<T> call) {
+        MailOperationEvent event = new MailOperationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            OperationCounters counters = operations.get(operation);
+            counters.latency.record(System.nanoTime() - start);
+            if (failed) {
+                counters.errors.increment();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation.method;
+                event.account = account;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    private enum Operation {
+        ADD_NEW_ACCOUNT("addNewAccount"),
+        CREATE_FOLDER("createFolder"),
+        ADD_RULE("addRule"),
+        RECEIVE_MAIL("receiveMail"),
+        GET_MAILS_FROM_FOLDER("getMailsFromFolder"),
+        SEND_MAIL("sendMail");
+
+        private final String method;
+
+        Operation(String method) {
+            this.method = method;
+        }
+    }
+
+    private static class OperationCounters {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,12 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import java.util.Map;
+
+/**
+ * The latencies of the operations of an {@link InstrumentedMailClient} and of their phases, keyed by name.
+ */
+public interface MailClientStatisticsMXBean {
+    Map<String, OperationStatistics> getOperations();
+
+    Map<String, OperationStatistics> getPhases();
+}
@@ -0,0 +1,50 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+
+/**
+ * Receives measurements of rule evaluation and mail delivery.
+ * The recorders are obtained once, when a rule or an account is added, so recording a measurement
+ * costs no lookup. When {@link #isEnabled()} is false, nothing is timed at all.
+ */
+public interface MailMetrics {
+    /**
+     * Records nothing.
+     */
+    MailMetrics NOOP = new NoopMailMetrics();
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * @return the recorder of every evaluation of the rule against a mail delivered to the account
+     */
+    RuleRecorder ruleRecorder(Account account, RuleDefinition rule);
+
+    /**
+     * @return the recorder of every delivery of mails to the account
+     */
+    DeliveryRecorder deliveryRecorder(Account account);
+
+    /**
+     * Records the time one phase of an operation took.
+     */
+    default void recordPhase(Phase phase, long nanos) {
+    }
+
+    @FunctionalInterface
+    interface RuleRecorder {
+        void recordEvaluation(boolean hit, long nanos);
+    }
+
+    @FunctionalInterface
+    interface DeliveryRecorder {
+        /**
+         * @param mails the number of mails delivered at once
+         * @param nanos the time the delivery took, waiting for the account included
+         */
+        void recordDelivery(int mails, long nanos);
+    }
+}
@@ -0,0 +1,21 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("bg.sofia.uni.fmi.mjt.mail.Operation")
+@Label("Mail Operation")
+@Category("Mail")
+@Description("A call of a mail client method")
+final class MailOperationEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Account")
+    String account;
+
+    @Label("Failed")
+    boolean failed;
+}
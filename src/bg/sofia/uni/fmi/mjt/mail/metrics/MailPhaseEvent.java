@@ -0,0 +1,20 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("bg.sofia.uni.fmi.mjt.mail.Phase")
+@Label("Mail Operation Phase")
+@Category("Mail")
+@Description("One phase of a mail client operation")
+final class MailPhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+}
@@ -0,0 +1,24 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+
+final class NoopMailMetrics implements MailMetrics {
+    private static final RuleRecorder RULE_RECORDER = (hit, nanos) -> { };
+    private static final DeliveryRecorder DELIVERY_RECORDER = (mails, nanos) -> { };
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public RuleRecorder ruleRecorder(Account account, RuleDefinition rule) {
+        return RULE_RECORDER;
+    }
+
+    @Override
+    public DeliveryRecorder deliveryRecorder(Account account) {
+        return DELIVERY_RECORDER;
+    }
+}
@@ -0,0 +1,61 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+/**
+ * Throughput and latency percentiles of an operation, in nanoseconds.
+ * A JavaBean rather than a record, so JMX can expose it as composite data.
+ */
+public class OperationStatistics {
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final double P50 = 50;
+    private static final double P99 = 99;
+    private static final double P999 = 99.9;
+
+    private final long count;
+    private final long errors;
+    private final double throughput;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    OperationStatistics(LatencyHistogram latency, long errors, long elapsedNanos) {
+        this.count = latency.count();
+        this.errors = errors;
+        this.throughput = elapsedNanos <= 0 ? 0 : count * NANOS_PER_SECOND / elapsedNanos;
+        this.p50 = latency.valueAtPercentile(P50);
+        this.p99 = latency.valueAtPercentile(P99);
+        this.p999 = latency.valueAtPercentile(P999);
+        this.max = latency.max();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the calls per second since the statistics started
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
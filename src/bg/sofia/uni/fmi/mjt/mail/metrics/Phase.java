@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+/**
+ * The stages a mail client operation goes through.
+ */
+public enum Phase {
+    /**
+     * Turning the metadata and content of a mail, or a rule definition, into their objects.
+     */
+    PARSE,
+    /**
+     * Finding the folder a received mail belongs to.
+     */
+    RULE_MATCH,
+    /**
+     * Storing a mail in its folder and indexing it.
+     */
+    FOLDER_INSERT,
+    /**
+     * Delivering a sent mail to all its recipients, their rule matches and folder inserts included.
+     */
+    FAN_OUT
+}
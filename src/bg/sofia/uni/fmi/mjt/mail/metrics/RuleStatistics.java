@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+/**
+ * How often a rule was evaluated, how often it matched, and how long its evaluations took in total.
+ */
+public record RuleStatistics(long evaluations, long hits, long totalNanos) {
+    public double hitRatio() {
+        return evaluations == 0 ? 0 : (double) hits / evaluations;
+    }
+
+    public double averageNanos() {
+        return evaluations == 0 ? 0 : (double) totalNanos / evaluations;
+    }
+}
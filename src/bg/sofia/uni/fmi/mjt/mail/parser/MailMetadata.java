@@ -0,0 +1,10 @@
+package bg.sofia.uni.fmi.mjt.mail.parser;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * @param senderEmail the email from the sender field, or null if the field is missing
+ */
+public record MailMetadata(String senderEmail, String subject, Set<String> recipients, LocalDateTime received) {
+}
@@ -0,0 +1,145 @@
+package bg.sofia.uni.fmi.mjt.mail.parser;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Single-pass parser of mail metadata. Lines may end with either "\n" or "\r\n", a field value is
+ * everything after the first colon of the line (so subjects may contain colons), and only the values
+ * that end up in the result are copied out of the input.
+ */
+public final class MailMetadataParser {
+    private static final String SENDER = "sender";
+    private static final String SUBJECT = "subject";
+    private static final String RECIPIENTS = "recipients";
+    private static final String RECEIVED = "received";
+    private static final String RECEIVED_PATTERN = "yyyy-MM-dd HH:mm";
+    private static final DateTimeFormatter RECEIVED_FORMAT = DateTimeFormatter.ofPattern(RECEIVED_PATTERN);
+
+    private MailMetadataParser() {
+    }
+
+    public static MailMetadata parse(CharSequence metadata) {
+        String senderEmail = null;
+        String subject = "";
+        Set<String> recipients = new LinkedHashSet<>();
+        LocalDateTime received = null;
+        int length = metadata.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = indexOf(metadata, '\n', lineStart, length);
+            int colon = indexOf(metadata, ':', lineStart, lineEnd);
+            if (colon < lineEnd) {
+                int keyStart = skipWhitespace(metadata, lineStart, colon);
+                int keyEnd = trimWhitespace(metadata, keyStart, colon);
+                int valueStart = skipWhitespace(metadata, colon + 1, lineEnd);
+                int valueEnd = trimWhitespace(metadata, valueStart, lineEnd);
+                if (regionEquals(metadata, keyStart, keyEnd, SENDER)) {
+                    senderEmail = metadata.subSequence(valueStart, valueEnd).toString();
+                } else if (regionEquals(metadata, keyStart, keyEnd, SUBJECT)) {
+                    subject = metadata.subSequence(valueStart, valueEnd).toString();
+                } else if (regionEquals(metadata, keyStart, keyEnd, RECIPIENTS)) {
+                    parseRecipients(metadata, valueStart, valueEnd, recipients);
+                } else if (regionEquals(metadata, keyStart, keyEnd, RECEIVED)) {
+                    received = parseReceived(metadata, valueStart, valueEnd);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return new MailMetadata(senderEmail, subject, recipients, received);
+    }
+
+    private static void parseRecipients(CharSequence text, int start, int end, Set<String> recipients) {
+        while (start < end) {
+            int comma = indexOf(text, ',', start, end);
+            int emailStart = skipWhitespace(text, start, comma);
+            int emailEnd = trimWhitespace(text, emailStart, comma);
+            if (emailStart < emailEnd) {
+                recipients.add(text.subSequence(emailStart, emailEnd).toString());
+            }
+            start = comma + 1;
+        }
+    }
+
+    /**
+     * Parses a date in the fixed format yyyy-MM-dd HH:mm. A date with a field out of its range is left to
+     * the formatter of that format, which resolves it the same way as any other date text: it rejects e.g.
+     * month 13 with a {@link DateTimeParseException}, and moves a day past the end of the month back to it.
+     */
+    private static LocalDateTime parseReceived(CharSequence text, int start, int end) {
+        if (end - start != RECEIVED_PATTERN.length()) {
+            throw invalidDate(text, start, end);
+        }
+        for (int i = 0; i < RECEIVED_PATTERN.length(); i++) {
+            char expected = RECEIVED_PATTERN.charAt(i);
+            char actual = text.charAt(start + i);
+            boolean matches = Character.isLetter(expected) ? actual >= '0' && actual <= '9' : actual == expected;
+            if (!matches) {
+                throw invalidDate(text, start, end);
+            }
+        }
+        try {
+            return LocalDateTime.of(
+                digits(text, start, 4),
+                digits(text, start + 5, 2),
+                digits(text, start + 8, 2),
+                digits(text, start + 11, 2),
+                digits(text, start + 14, 2));
+        } catch (DateTimeException e) {
+            return LocalDateTime.parse(text.subSequence(start, end), RECEIVED_FORMAT);
+        }
+    }
+
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static DateTimeParseException invalidDate(CharSequence text, int start, int end) {
+        String date = text.subSequence(start, end).toString();
+        return new DateTimeParseException(
+            String.format("Text '%s' does not match %s", date, RECEIVED_PATTERN), date, 0);
+    }
+
+    private static int indexOf(CharSequence text, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static int skipWhitespace(CharSequence text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimWhitespace(CharSequence text, int from, int to) {
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean regionEquals(CharSequence text, int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (text.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package bg.sofia.uni.fmi.mjt.mail.rules;
+
+import bg.sofia.uni.fmi.mjt.mail.text.Tokenizer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds which of a fixed set of keywords occur as words of a text, in a single pass over it.
+ * The keywords are compiled into a trie over the word characters. Keywords only match whole words, the same
+ * way {@link bg.sofia.uni.fmi.mjt.mail.text.TokenSet#contains} does, so every match starts at a word boundary:
+ * the walk restarts at the root at each one and skips the rest of a word once it leaves the trie, which is
+ * why no failure links are needed.
+ */
+final class KeywordMatcher {
+    static final int NO_KEYWORD = -1;
+
+    private static final int ASCII = 128;
+    private static final int[] SYMBOLS = new int[ASCII];
+    private static final int ALPHABET;
+    private static final int NOT_A_WORD_CHAR = -1;
+    private static final int ROOT = 0;
+    private static final int DEAD = -1;
+    private static final int BITS_PER_WORD = Long.SIZE;
+
+    static {
+        int symbol = 0;
+        for (char c = 0; c < ASCII; c++) {
+            SYMBOLS[c] = Tokenizer.isWordChar(c) ? symbol++ : NOT_A_WORD_CHAR;
+        }
+        ALPHABET = symbol;
+    }
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final int[] transitions;
+    private final int[] keywordAt;
+
+    KeywordMatcher(Collection<String> keywords) {
+        int maxStates = 1;
+        for (String keyword : keywords) {
+            maxStates += keyword.length();
+        }
+        int[] next = new int[maxStates * ALPHABET];
+        int[] accepting = new int[maxStates];
+        Arrays.fill(accepting, NO_KEYWORD);
+        int states = 1;
+        for (String keyword : keywords) {
+            if (ids.containsKey(keyword) || !isWord(keyword)) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                int slot = state * ALPHABET + SYMBOLS[keyword.charAt(i)];
+                if (next[slot] == ROOT) {
+                    next[slot] = states++;
+                }
+                state = next[slot];
+            }
+            accepting[state] = ids.size();
+            ids.put(keyword, ids.size());
+        }
+        this.transitions = Arrays.copyOf(next, states * ALPHABET);
+        this.keywordAt = Arrays.copyOf(accepting, states);
+    }
+
+    /**
+     * @return the id of the keyword, or {@link #NO_KEYWORD} if it is not a single word and can never be found
+     */
+    int idOf(String keyword) {
+        return ids.getOrDefault(keyword, NO_KEYWORD);
+    }
+
+    /**
+     * @return the number of keywords, which are given the ids from 0 to one less than it
+     */
+    int size() {
+        return ids.size();
+    }
+
+    /**
+     * @return a bitmap with the bit of every keyword found in the text set
+     */
+    long[] find(CharSequence text) {
+        long[] found = new long[(ids.size() + BITS_PER_WORD - 1) / BITS_PER_WORD];
+        if (ids.isEmpty()) {
+            return found;
+        }
+        int state = ROOT;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int symbol = c < ASCII ? SYMBOLS[c] : NOT_A_WORD_CHAR;
+            if (symbol == NOT_A_WORD_CHAR) {
+                mark(found, state);
+                state = ROOT;
+            } else if (state != DEAD) {
+                int target = transitions[state * ALPHABET + symbol];
+                state = target == ROOT ? DEAD : target;
+            }
+        }
+        mark(found, state);
+        return found;
+    }
+
+    static boolean containsAll(long[] found, int[] keywords) {
+        for (int keyword : keywords) {
+            if (keyword == NO_KEYWORD || (found[keyword / BITS_PER_WORD] & (1L << keyword)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void mark(long[] found, int state) {
+        if (state > ROOT && keywordAt[state] != NO_KEYWORD) {
+            int keyword = keywordAt[state];
+            found[keyword / BITS_PER_WORD] |= 1L << keyword;
+        }
+    }
+
+    private static boolean isWord(String keyword) {
+        if (keyword.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (!Tokenizer.isWordChar(keyword.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
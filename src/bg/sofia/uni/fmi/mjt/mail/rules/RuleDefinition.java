@@ -1,22 +1,39 @@
 package bg.sofia.uni.fmi.mjt.mail.rules;
 
 import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.text.MailTokens;
+import bg.sofia.uni.fmi.mjt.mail.text.TokenSet;
 
-import java.util.HashSet;
-import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 public record RuleDefinition(String path, Set<String> subjectKeywords, Set<String> bodyKeywords,
                              Set<String> recipientEmails, String fromEmail, int priority) {
     public boolean matchesMail(Mail mail, String receiverEmail) {
-        String mailBody = mail.body();
-        String mailSubject = mail.subject();
-        Set<String> bodyKeywords = new HashSet<>();
-        bodyKeywords.addAll(List.of(mailBody.split("\\W+")));
-        Set<String> subjectKeywords = new HashSet<>();
-        subjectKeywords.addAll(List.of(mailSubject.split("\\W+")));
+        return matchesMail(mail, new MailTokens(mail.subject(), mail.content()), receiverEmail);
+    }
+
+    /**
+     * @param tokens the words of the mail, shared by the evaluations of several rules
+     */
+    public boolean matchesMail(Mail mail, MailTokens tokens, String receiverEmail) {
         return (fromEmail.isEmpty() || fromEmail.equals(mail.sender().emailAddress())) &&
             (recipientEmails.isEmpty() || recipientEmails.contains(receiverEmail)) &&
-            (bodyKeywords.containsAll(this.bodyKeywords) || subjectKeywords.containsAll(this.subjectKeywords));
+            (matchesKeywords(bodyKeywords, tokens.body())
+                || matchesKeywords(subjectKeywords, tokens.subject()));
+    }
+
+    /**
+     * @return whether the other rule has the same conditions and priority, whatever its folder
+     */
+    public boolean hasSameConditions(RuleDefinition other) {
+        return priority == other.priority && fromEmail.equals(other.fromEmail)
+            && Objects.equals(subjectKeywords, other.subjectKeywords)
+            && Objects.equals(bodyKeywords, other.bodyKeywords)
+            && recipientEmails.equals(other.recipientEmails);
+    }
+
+    private static boolean matchesKeywords(Set<String> keywords, TokenSet tokens) {
+        return keywords != null && tokens.containsAll(keywords);
     }
-}
\ No newline at end of file
+}
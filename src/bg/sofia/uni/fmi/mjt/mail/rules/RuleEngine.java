@@ -0,0 +1,279 @@
+package bg.sofia.uni.fmi.mjt.mail.rules;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.metrics.MailMetrics;
+import bg.sofia.uni.fmi.mjt.mail.metrics.MailMetrics.RuleRecorder;
+import bg.sofia.uni.fmi.mjt.mail.text.MailTokens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Inverted index over the rules of a single account.
+ * The rules are compiled into a flat table sorted by priority, 1 first, with rules of equal priority
+ * kept in the order they were added. Every rule is anchored under its most selective condition -
+ * the sender, each of the recipients, or one keyword per keyword condition - so a mail only probes
+ * the index with its own sender, receiver and keywords, and only the rules found there are evaluated,
+ * in table order, up to the first hit.
+ * The keywords of all rules are compiled into one {@link KeywordMatcher}, so the subject and the body
+ * of a mail are each scanned at most once, however many rules and keywords there are, and every
+ * keyword condition is resolved from the resulting bitmaps.
+ * The table is immutable and replaced as a whole when a rule is added, so evaluating a mail takes
+ * no lock and allocates no iterators.
+ * If the metrics are enabled, every evaluation of a rule is timed and recorded for that rule.
+ *
+ * @param <T> the type of the rule targets
+ */
+public class RuleEngine<T> {
+    private static final Comparator<CompiledRule<?>> PRIORITY_ORDER =
+        Comparator.comparingInt(compiled -> compiled.rule().priority());
+
+    private final MailMetrics metrics;
+    private final Account account;
+    private volatile RuleTable<T> table = new RuleTable<>(List.of(), false);
+
+    public RuleEngine() {
+        this(MailMetrics.NOOP, null);
+    }
+
+    /**
+     * @param metrics records the evaluations of the rules
+     * @param account the account the rules belong to
+     */
+    public RuleEngine(MailMetrics metrics, Account account) {
+        this.metrics = metrics;
+        this.account = account;
+    }
+
+    public synchronized void addRule(RuleDefinition rule, T target) {
+        List<CompiledRule<T>> sorted = new ArrayList<>(Arrays.asList(table.rules));
+        sorted.add(new CompiledRule<>(rule, target, metrics.ruleRecorder(account, rule), null, null));
+        sorted.sort(PRIORITY_ORDER);
+        table = new RuleTable<>(sorted, metrics.isEnabled());
+    }
+
+    public boolean isEmpty() {
+        return table.rules.length == 0;
+    }
+
+    /**
+     * @param tokens the text of the mail, so its body is decoded once for every account it is delivered to
+     * @return the target of the first rule in priority order that matches the mail, or null if none does
+     */
+    public T findTarget(Mail mail, MailTokens tokens, String receiverEmail) {
+        RuleTable<T> current = table;
+        if (current.rules.length == 0) {
+            return null;
+        }
+        Probe<T> probe = new Probe<>(current, mail, tokens, receiverEmail);
+        probe.check(current.unanchored);
+        probe.check(current.fromIndex.get(mail.sender().emailAddress()));
+        probe.check(current.recipientIndex.get(receiverEmail));
+        if (current.subjectAnchored) {
+            probe.checkKeywords(current.subjectIndex, probe.subjectKeywords());
+        }
+        if (current.bodyAnchored) {
+            probe.checkKeywords(current.bodyIndex, probe.bodyKeywords());
+        }
+        return probe.best == Integer.MAX_VALUE ? null : current.rules[probe.best].target();
+    }
+
+    /**
+     * A rule with the recorder of its evaluations and the ids of its subject and body keywords.
+     */
+    private record CompiledRule<T>(RuleDefinition rule, T target, RuleRecorder recorder,
+                                   int[] subjectKeywords, int[] bodyKeywords) {
+    }
+
+    /**
+     * The compiled rules in evaluation order, with the indexes of their anchors. Every anchor list
+     * holds table positions in increasing order; the keyword indexes are arrays by keyword id.
+     */
+    private static final class RuleTable<T> {
+        private static final int[] NONE = new int[0];
+
+        private final CompiledRule<T>[] rules;
+        private final KeywordMatcher keywords;
+        private final Map<String, int[]> fromIndex = new HashMap<>();
+        private final Map<String, int[]> recipientIndex = new HashMap<>();
+        private final int[][] subjectIndex;
+        private final int[][] bodyIndex;
+        private final boolean subjectAnchored;
+        private final boolean bodyAnchored;
+        private final int[] unanchored;
+        private final boolean timed;
+
+        @SuppressWarnings("unchecked")
+        RuleTable(List<CompiledRule<T>> sorted, boolean timed) {
+            this.timed = timed;
+            Set<String> allKeywords = new LinkedHashSet<>();
+            for (CompiledRule<T> compiled : sorted) {
+                if (compiled.rule().subjectKeywords() != null) {
+                    allKeywords.addAll(compiled.rule().subjectKeywords());
+                }
+                if (compiled.rule().bodyKeywords() != null) {
+                    allKeywords.addAll(compiled.rule().bodyKeywords());
+                }
+            }
+            this.keywords = new KeywordMatcher(allKeywords);
+            this.subjectIndex = new int[keywords.size()][];
+            this.bodyIndex = new int[keywords.size()][];
+            this.rules = (CompiledRule<T>[]) new CompiledRule<?>[sorted.size()];
+            boolean bySubject = false;
+            boolean byBody = false;
+            List<Integer> withoutAnchor = new ArrayList<>();
+            for (int i = 0; i < rules.length; i++) {
+                RuleDefinition rule = sorted.get(i).rule();
+                rules[i] = new CompiledRule<>(rule, sorted.get(i).target(), sorted.get(i).recorder(),
+                    keywordIds(rule.subjectKeywords()), keywordIds(rule.bodyKeywords()));
+                if (!rule.fromEmail().isEmpty()) {
+                    anchor(fromIndex, rule.fromEmail(), i);
+                } else if (!rule.recipientEmails().isEmpty()) {
+                    for (String recipient : rule.recipientEmails()) {
+                        anchor(recipientIndex, recipient, i);
+                    }
+                } else if (!anchorKeywords(subjectIndex, rules[i].subjectKeywords(), i)
+                    || !anchorKeywords(bodyIndex, rules[i].bodyKeywords(), i)) {
+                    withoutAnchor.add(i);
+                } else {
+                    bySubject |= isAnchored(rules[i].subjectKeywords());
+                    byBody |= isAnchored(rules[i].bodyKeywords());
+                }
+            }
+            this.subjectAnchored = bySubject;
+            this.bodyAnchored = byBody;
+            this.unanchored = withoutAnchor.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * @return the ids of the keywords, or null if there is no such condition
+         */
+        private int[] keywordIds(Set<String> words) {
+            if (words == null) {
+                return null;
+            }
+            return words.stream().mapToInt(keywords::idOf).toArray();
+        }
+
+        /**
+         * @return false if the keyword condition is empty and therefore holds for every mail
+         */
+        private static boolean anchorKeywords(int[][] index, int[] keywords, int rule) {
+            if (keywords == null) {
+                return true;
+            }
+            if (keywords.length == 0) {
+                return false;
+            }
+            if (isAnchored(keywords)) {
+                index[keywords[0]] = append(index[keywords[0]], rule);
+            }
+            return true;
+        }
+
+        private static boolean isAnchored(int[] keywords) {
+            return keywords != null && keywords[0] != KeywordMatcher.NO_KEYWORD;
+        }
+
+        private static <K> void anchor(Map<K, int[]> index, K key, int rule) {
+            index.put(key, append(index.get(key), rule));
+        }
+
+        private static int[] append(int[] anchored, int rule) {
+            int[] current = anchored == null ? NONE : anchored;
+            int[] extended = Arrays.copyOf(current, current.length + 1);
+            extended[current.length] = rule;
+            return extended;
+        }
+    }
+
+    private static final class Probe<T> {
+        private final RuleTable<T> table;
+        private final Mail mail;
+        private final MailTokens tokens;
+        private final String receiverEmail;
+        private int best = Integer.MAX_VALUE;
+        private long[] subjectKeywords;
+        private long[] bodyKeywords;
+
+        Probe(RuleTable<T> table, Mail mail, MailTokens tokens, String receiverEmail) {
+            this.table = table;
+            this.mail = mail;
+            this.tokens = tokens;
+            this.receiverEmail = receiverEmail;
+        }
+
+        long[] subjectKeywords() {
+            if (subjectKeywords == null) {
+                subjectKeywords = table.keywords.find(tokens.subjectText());
+            }
+            return subjectKeywords;
+        }
+
+        long[] bodyKeywords() {
+            if (bodyKeywords == null) {
+                bodyKeywords = table.keywords.find(tokens.bodyText());
+            }
+            return bodyKeywords;
+        }
+
+        void checkKeywords(int[][] index, long[] found) {
+            for (int word = 0; word < found.length; word++) {
+                for (long bits = found[word]; bits != 0; bits &= bits - 1) {
+                    check(index[word * Long.SIZE + Long.numberOfTrailingZeros(bits)]);
+                }
+            }
+        }
+
+        /**
+         * Evaluates the candidates in table order, up to the first hit or the best hit found so far.
+         */
+        void check(int[] candidates) {
+            if (candidates == null) {
+                return;
+            }
+            for (int candidate : candidates) {
+                if (candidate >= best) {
+                    return;
+                }
+                if (matches(table.rules[candidate])) {
+                    best = candidate;
+                    return;
+                }
+            }
+        }
+
+        private boolean matches(CompiledRule<T> compiled) {
+            if (!table.timed) {
+                return evaluate(compiled);
+            }
+            long start = System.nanoTime();
+            boolean hit = evaluate(compiled);
+            compiled.recorder().recordEvaluation(hit, System.nanoTime() - start);
+            return hit;
+        }
+
+        /**
+         * Same as {@link RuleDefinition#matchesMail}, with the keyword conditions resolved from the bitmaps.
+         */
+        private boolean evaluate(CompiledRule<T> compiled) {
+            RuleDefinition rule = compiled.rule();
+            return (rule.fromEmail().isEmpty() || rule.fromEmail().equals(mail.sender().emailAddress()))
+                && (rule.recipientEmails().isEmpty() || rule.recipientEmails().contains(receiverEmail))
+                && (matchesKeywords(compiled.subjectKeywords(), this::subjectKeywords)
+                || matchesKeywords(compiled.bodyKeywords(), this::bodyKeywords));
+        }
+
+        private static boolean matchesKeywords(int[] ids, Supplier<long[]> found) {
+            return ids != null && (ids.length == 0 || KeywordMatcher.containsAll(found.get(), ids));
+        }
+    }
+}
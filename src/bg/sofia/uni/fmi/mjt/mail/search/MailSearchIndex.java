@@ -0,0 +1,265 @@
+package bg.sofia.uni.fmi.mjt.mail.search;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.text.MailTokens;
+import bg.sofia.uni.fmi.mjt.mail.text.WordPositions;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Positional inverted index over the mails of one account, updated incrementally on every delivery.
+ * Subject and body words are indexed case-insensitively, with a gap between the two fields so phrases
+ * never span them; the sender and the recipients are indexed as {@code from:} and {@code to:} terms.
+ * The words of a mail are found once, by its {@link MailTokens}, and only the postings are updated
+ * under the lock of the index.
+ * Postings are kept delta-encoded in byte arrays, so the index stays compact for large mailboxes.
+ * A query walks the list of its rarest term and skips through the other lists to the same documents,
+ * checks the positions of phrases only for those, and keeps the newest matches in a heap of the size
+ * of the limit.
+ */
+public class MailSearchIndex {
+    private static final int[] NO_POSITIONS = new int[0];
+    private static final Comparator<Mail> NEWEST_FIRST =
+        Comparator.comparing(Mail::received, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .reversed();
+
+    private final List<Mail> documents = new ArrayList<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param tokens the words of the mail, which should be found before the caller takes any lock
+     *               of its own, as they are shared with the other accounts the mail is delivered to
+     */
+    public void add(Mail mail, MailTokens tokens) {
+        WordPositions words = tokens.words();
+        List<String> fields = new ArrayList<>(mail.recipients().size() + 1);
+        fields.add(SearchQuery.senderTerm(mail.sender().emailAddress()));
+        for (String recipient : mail.recipients()) {
+            fields.add(SearchQuery.recipientTerm(recipient));
+        }
+        lock.writeLock().lock();
+        try {
+            int document = documents.size();
+            documents.add(mail);
+            words.forEach((term, positions, count) -> postings.computeIfAbsent(term, t -> new Postings())
+                .add(document, positions, count));
+            for (String field : new LinkedHashSet<>(fields)) {
+                postings.computeIfAbsent(field, t -> new Postings()).add(document, NO_POSITIONS, 0);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param query words that must all appear in the subject or the body, "quoted phrases",
+     *              and {@code from:<email>} or {@code to:<email>} conditions
+     * @param limit maximum number of results
+     * @return the matching mails, most recently received first
+     */
+    public List<Mail> search(String query, int limit) {
+        SearchQuery parsed = SearchQuery.parse(query);
+        if (parsed.phrases().isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            return newest(matchingDocuments(parsed), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the newest mails of the documents, each once, ordered as {@link #NEWEST_FIRST} with the
+     * earlier document first among equals
+     */
+    private List<Mail> newest(int[] matches, int limit) {
+        Comparator<Integer> rank = Comparator.<Integer, Mail>comparing(documents::get, NEWEST_FIRST)
+            .thenComparing(Comparator.naturalOrder());
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(limit, matches.length) + 1, rank.reversed());
+        Set<Long> inHeap = new HashSet<>();
+        for (int document : matches) {
+            long id = documents.get(document).id();
+            if (inHeap.contains(id)) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(document);
+                inHeap.add(id);
+            } else if (rank.compare(document, heap.peek()) < 0) {
+                inHeap.remove(documents.get(heap.poll()).id());
+                heap.add(document);
+                inHeap.add(id);
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(heap);
+        ranked.sort(rank);
+        List<Mail> result = new ArrayList<>(ranked.size());
+        for (int document : ranked) {
+            result.add(documents.get(document));
+        }
+        return result;
+    }
+
+    /**
+     * @param conditions  sets of words, of which a mail must contain all the words of any one, case-insensitively,
+     *                    in the subject or the body
+     * @param senderEmail the required sender, or null for any
+     * @return every matching mail once, in the order the mails were added to the index
+     */
+    public List<Mail> findAny(Collection<? extends Collection<String>> conditions, String senderEmail) {
+        List<SearchQuery> queries = new ArrayList<>(conditions.size());
+        for (Collection<String> words : conditions) {
+            List<List<String>> terms = new ArrayList<>(words.size() + 1);
+            for (String word : words) {
+                terms.add(List.of(SearchQuery.term(word, 0, word.length())));
+            }
+            if (senderEmail != null) {
+                terms.add(List.of(SearchQuery.senderTerm(senderEmail)));
+            }
+            if (!terms.isEmpty()) {
+                queries.add(new SearchQuery(terms));
+            }
+        }
+        List<Mail> matches = new ArrayList<>();
+        Set<Long> found = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            int[] documentsFound = new int[0];
+            for (SearchQuery query : queries) {
+                documentsFound = union(documentsFound, matchingDocuments(query));
+            }
+            for (int document : documentsFound) {
+                Mail mail = documents.get(document);
+                if (found.add(mail.id())) {
+                    matches.add(mail);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches;
+    }
+
+    /**
+     * @return the documents of both increasing arrays, once each and in increasing order
+     */
+    private static int[] union(int[] first, int[] second) {
+        int[] result = new int[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < first.length || j < second.length) {
+            if (j == second.length || i < first.length && first[i] < second[j]) {
+                result[count++] = first[i++];
+            } else {
+                if (i < first.length && first[i] == second[j]) {
+                    i++;
+                }
+                result[count++] = second[j++];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @return the documents matching every phrase of the query, in increasing order
+     */
+    private int[] matchingDocuments(SearchQuery query) {
+        Map<String, Postings> terms = new HashMap<>();
+        for (List<String> phrase : query.phrases()) {
+            for (String term : phrase) {
+                Postings termPostings = postings.get(term);
+                if (termPostings == null) {
+                    return new int[0];
+                }
+                terms.put(term, termPostings);
+            }
+        }
+        List<Postings> bySelectivity = new ArrayList<>(terms.values());
+        bySelectivity.sort(Comparator.comparingInt(Postings::documentCount));
+        int[] candidates = bySelectivity.get(0).documents();
+        for (int i = 1; i < bySelectivity.size() && candidates.length > 0; i++) {
+            candidates = intersect(candidates, bySelectivity.get(i).cursor());
+        }
+        for (List<String> phrase : query.phrases()) {
+            if (phrase.size() > 1 && candidates.length > 0) {
+                candidates = filterPhrase(candidates, phrase, terms);
+            }
+        }
+        return candidates;
+    }
+
+    private static int[] intersect(int[] candidates, Postings.Cursor larger) {
+        int[] result = new int[candidates.length];
+        int count = 0;
+        for (int document : candidates) {
+            int found = larger.advance(document);
+            if (found == Postings.NO_MORE_DOCUMENTS) {
+                break;
+            }
+            if (found == document) {
+                result[count++] = document;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] filterPhrase(int[] candidates, List<String> phrase, Map<String, Postings> terms) {
+        List<Postings.Cursor> cursors = new ArrayList<>(phrase.size());
+        for (String term : phrase) {
+            cursors.add(terms.get(term).cursor());
+        }
+        int[] result = new int[candidates.length];
+        int count = 0;
+        for (int document : candidates) {
+            for (Postings.Cursor cursor : cursors) {
+                cursor.advance(document);
+            }
+            if (containsPhrase(cursors)) {
+                result[count++] = document;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @param phrase cursors of the words of the phrase, all at the same document
+     */
+    private static boolean containsPhrase(List<Postings.Cursor> phrase) {
+        for (int start : phrase.get(0).positions()) {
+            boolean matches = true;
+            for (int word = 1; word < phrase.size() && matches; word++) {
+                matches = phrase.get(word).hasPosition(start + word);
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,201 @@
+package bg.sofia.uni.fmi.mjt.mail.search;
+
+import java.util.Arrays;
+
+/**
+ * Postings list of a single term. For every document containing the term, in increasing document order,
+ * it stores the gap from the previous document id, the number of positions of the term in the document,
+ * the number of bytes of those positions and the gaps between them - all as variable-length integers
+ * in a single byte array. The list is split into blocks of {@value #BLOCK_SIZE} documents, and the
+ * document before every block and the offset the block starts at are kept aside, so a {@link Cursor}
+ * skips whole blocks on its way to a document, and skips the positions of the documents it passes
+ * without decoding them.
+ */
+final class Postings {
+    static final int NO_MORE_DOCUMENTS = Integer.MAX_VALUE;
+
+    private static final int BLOCK_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_BLOCKS = 4;
+    private static final int MAX_VARINT_BYTES = 5;
+    private static final int PAYLOAD_MASK = 0x7F;
+    private static final int CONTINUATION_BIT = 0x80;
+    private static final int PAYLOAD_BITS = 7;
+
+    private byte[] data = new byte[INITIAL_CAPACITY];
+    private int length;
+    private int lastDocument = -1;
+    private int documentCount;
+    private int[] blockBases = new int[INITIAL_BLOCKS];
+    private int[] blockOffsets = new int[INITIAL_BLOCKS];
+    private int blockCount;
+
+    int documentCount() {
+        return documentCount;
+    }
+
+    /**
+     * @param document  id greater than every document added so far
+     * @param positions increasing positions of the term in the document
+     * @param count     number of positions to take from the array
+     */
+    void add(int document, int[] positions, int count) {
+        if (documentCount % BLOCK_SIZE == 0) {
+            if (blockCount == blockBases.length) {
+                blockBases = Arrays.copyOf(blockBases, blockCount * 2);
+                blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+            }
+            blockBases[blockCount] = lastDocument;
+            blockOffsets[blockCount] = length;
+            blockCount++;
+        }
+        int positionBytes = 0;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            positionBytes += varIntSize(positions[i] - previous);
+            previous = positions[i];
+        }
+        writeVarInt(document - lastDocument);
+        writeVarInt(count);
+        writeVarInt(positionBytes);
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVarInt(positions[i] - previous);
+            previous = positions[i];
+        }
+        lastDocument = document;
+        documentCount++;
+    }
+
+    /**
+     * @return the ids of all the documents, in increasing order
+     */
+    int[] documents() {
+        int[] documents = new int[documentCount];
+        Cursor cursor = cursor();
+        for (int i = 0; i < documentCount; i++) {
+            documents[i] = cursor.next();
+        }
+        return documents;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Forward-only iterator over the documents of the list. It must only be used while the list is
+     * not changed.
+     */
+    final class Cursor {
+        private int offset;
+        private int read;
+        private int index;
+        private int document = -1;
+        private int positionCount;
+        private int positionOffset;
+
+        /**
+         * @return the next document, or {@link #NO_MORE_DOCUMENTS} after the last one
+         */
+        int next() {
+            if (index == documentCount) {
+                document = NO_MORE_DOCUMENTS;
+                return document;
+            }
+            read = offset;
+            document += readVarInt();
+            positionCount = readVarInt();
+            int positionBytes = readVarInt();
+            positionOffset = read;
+            offset = positionOffset + positionBytes;
+            index++;
+            return document;
+        }
+
+        /**
+         * Moves to the first document not less than the target, skipping the blocks that end before it.
+         *
+         * @return that document, or {@link #NO_MORE_DOCUMENTS} if there is none
+         */
+        int advance(int target) {
+            if (document >= target) {
+                return document;
+            }
+            int block = index / BLOCK_SIZE + 1;
+            if (block < blockCount && blockBases[block] < target) {
+                while (block + 1 < blockCount && blockBases[block + 1] < target) {
+                    block++;
+                }
+                offset = blockOffsets[block];
+                index = block * BLOCK_SIZE;
+                document = blockBases[block];
+            }
+            while (next() < target) {
+                // the positions of the documents passed are skipped, not decoded
+            }
+            return document;
+        }
+
+        /**
+         * @return whether the term is at the position in the current document
+         */
+        boolean hasPosition(int position) {
+            read = positionOffset;
+            int current = 0;
+            for (int i = 0; i < positionCount; i++) {
+                current += readVarInt();
+                if (current >= position) {
+                    return current == position;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the positions of the term in the current document, in increasing order
+         */
+        int[] positions() {
+            int[] positions = new int[positionCount];
+            read = positionOffset;
+            int current = 0;
+            for (int i = 0; i < positionCount; i++) {
+                current += readVarInt();
+                positions[i] = current;
+            }
+            return positions;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = data[read++];
+                value |= (current & PAYLOAD_MASK) << shift;
+                shift += PAYLOAD_BITS;
+            } while ((current & CONTINUATION_BIT) != 0);
+            return value;
+        }
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~PAYLOAD_MASK) != 0) {
+            value >>>= PAYLOAD_BITS;
+            size++;
+        }
+        return size;
+    }
+
+    private void writeVarInt(int value) {
+        if (length + MAX_VARINT_BYTES > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + MAX_VARINT_BYTES));
+        }
+        while ((value & ~PAYLOAD_MASK) != 0) {
+            data[length++] = (byte) ((value & PAYLOAD_MASK) | CONTINUATION_BIT);
+            value >>>= PAYLOAD_BITS;
+        }
+        data[length++] = (byte) value;
+    }
+}
@@ -0,0 +1,77 @@
+package bg.sofia.uni.fmi.mjt.mail.search;
+
+import bg.sofia.uni.fmi.mjt.mail.text.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parsed search query: a conjunction of phrases, where a single-word phrase is a plain term.
+ * Words are matched case-insensitively; {@code from:<email>} and {@code to:<email>} match the sender
+ * and the recipients, and text in double quotes must appear as a phrase.
+ */
+record SearchQuery(List<List<String>> phrases) {
+    static final String SENDER_PREFIX = "from:";
+    static final String RECIPIENT_PREFIX = "to:";
+    private static final char QUOTE = '"';
+
+    static SearchQuery parse(String query) {
+        List<List<String>> phrases = new ArrayList<>();
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == QUOTE) {
+                int end = query.indexOf(QUOTE, i + 1);
+                end = end < 0 ? length : end;
+                List<String> phrase = words(query.substring(i + 1, end));
+                if (!phrase.isEmpty()) {
+                    phrases.add(phrase);
+                }
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < length && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != QUOTE) {
+                    end++;
+                }
+                addPart(query.substring(i, end), phrases);
+                i = end;
+            }
+        }
+        return new SearchQuery(phrases);
+    }
+
+    private static void addPart(String part, List<List<String>> phrases) {
+        String lowerCase = part.toLowerCase(Locale.ROOT);
+        for (String prefix : List.of(SENDER_PREFIX, RECIPIENT_PREFIX)) {
+            if (lowerCase.startsWith(prefix) && lowerCase.length() > prefix.length()) {
+                phrases.add(List.of(lowerCase));
+                return;
+            }
+        }
+        for (String word : words(part)) {
+            phrases.add(List.of(word));
+        }
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        Tokenizer.forEachWord(text, (source, start, end) -> words.add(term(source, start, end)));
+        return words;
+    }
+
+    static String term(CharSequence text, int start, int end) {
+        return text.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+    }
+
+    static String senderTerm(String email) {
+        return SENDER_PREFIX + email.toLowerCase(Locale.ROOT);
+    }
+
+    static String recipientTerm(String email) {
+        return RECIPIENT_PREFIX + email.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,66 @@
+package bg.sofia.uni.fmi.mjt.mail.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to nodes by consistent hashing. Every node is placed on a ring of 64-bit hashes at a number
+ * of virtual points, and a key belongs to the first point at or after its own hash, so adding a node
+ * only moves the keys that now fall before one of its points - about 1/N of them - and spreads
+ * the load of the other nodes evenly.
+ * The hash is computed from the bytes of the key, so the placement does not change between runs.
+ * The ring itself is kept in memory only, and is rebuilt by adding the same nodes under the same ids.
+ *
+ * @param <T> the type of the nodes
+ */
+final class ConsistentHashRing<T> {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final NavigableMap<Long, T> points = new TreeMap<>();
+    private final int virtualNodes;
+
+    ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be positive!");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * @param id the name the points of the node are computed from, unique among the nodes
+     */
+    void add(String id, T node) {
+        for (int i = 0; i < virtualNodes; i++) {
+            points.putIfAbsent(hash(id + '#' + i), node);
+        }
+    }
+
+    /**
+     * @return the node of the key, or null if the ring is empty
+     */
+    T ownerOf(String key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, T> owner = points.ceilingEntry(hash(key));
+        return owner == null ? points.firstEntry().getValue() : owner.getValue();
+    }
+
+    /**
+     * FNV-1a, followed by the finalizer of MurmurHash3 to spread the similar names of the points.
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.mail.shard;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+
+import java.util.List;
+
+/**
+ * A mail sent by an account of one shard to accounts of another.
+ *
+ * @param sender       the account that sent the mail
+ * @param accountNames the receiving accounts, all of them on the shard the delivery is sent to
+ */
+public record Delivery(Account sender, List<String> accountNames, String mailMetadata, String mailContent) {
+}
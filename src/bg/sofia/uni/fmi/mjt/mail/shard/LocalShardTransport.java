@@ -0,0 +1,82 @@
+package bg.sofia.uni.fmi.mjt.mail.shard;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.store.AccountSnapshot;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A shard served by an {@link Outlook} in the same process. Deliveries and snapshots are passed
+ * as they are, without being serialized.
+ */
+public class LocalShardTransport implements ShardTransport {
+    private final Outlook outlook;
+
+    public LocalShardTransport(Outlook outlook) {
+        if (outlook == null) {
+            throw new IllegalArgumentException("Outlook is invalid!");
+        }
+        this.outlook = outlook;
+    }
+
+    @Override
+    public Account addNewAccount(String accountName, String email) {
+        return outlook.addNewAccount(accountName, email);
+    }
+
+    @Override
+    public void createFolder(String accountName, String path) {
+        outlook.createFolder(accountName, path);
+    }
+
+    @Override
+    public void addRule(String accountName, String folderPath, String ruleDefinition, int priority) {
+        outlook.addRule(accountName, folderPath, ruleDefinition, priority);
+    }
+
+    @Override
+    public void receiveMail(String accountName, String mailMetadata, String mailContent) {
+        outlook.receiveMail(accountName, mailMetadata, mailContent);
+    }
+
+    @Override
+    public Collection<Mail> getMailsFromFolder(String account, String folderPath) {
+        return outlook.getMailsFromFolder(account, folderPath);
+    }
+
+    @Override
+    public void sendMail(String accountName, String mailMetadata, String mailContent) {
+        outlook.sendMail(accountName, mailMetadata, mailContent);
+    }
+
+    @Override
+    public void deliver(List<Delivery> deliveries) {
+        for (Delivery delivery : deliveries) {
+            outlook.deliverMail(delivery.sender(), delivery.accountNames(), delivery.mailMetadata(),
+                delivery.mailContent());
+        }
+    }
+
+    @Override
+    public void addSentMail(String accountName, String mailMetadata, String mailContent) {
+        outlook.addSentMail(accountName, mailMetadata, mailContent);
+    }
+
+    @Override
+    public AccountSnapshot exportAccount(String accountName) {
+        return outlook.exportAccount(accountName);
+    }
+
+    @Override
+    public void importAccount(AccountSnapshot snapshot) {
+        outlook.importAccount(snapshot);
+    }
+
+    @Override
+    public void removeAccount(String accountName) {
+        outlook.removeAccount(accountName);
+    }
+}
@@ -0,0 +1,49 @@
+package bg.sofia.uni.fmi.mjt.mail.shard;
+
+import bg.sofia.uni.fmi.mjt.mail.MailClient;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountNotFoundException;
+import bg.sofia.uni.fmi.mjt.mail.store.AccountSnapshot;
+
+import java.util.List;
+
+/**
+ * A shard of a {@link ShardedMailClient}: a mail client that owns a part of the accounts, with the
+ * operations the other shards need to deliver mails to them and to move them between shards.
+ */
+public interface ShardTransport extends MailClient {
+
+    /**
+     * Delivers every mail to its accounts on this shard, by their rules. The senders have no accounts here.
+     *
+     * @throws AccountNotFoundException if any of the accounts does not exist
+     */
+    void deliver(List<Delivery> deliveries);
+
+    /**
+     * Stores a mail in the sender's "/sent" folder only, as its receivers are on other shards.
+     *
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    void addSentMail(String accountName, String mailMetadata, String mailContent);
+
+    /**
+     * @return the folders, rules and mails of the account
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    AccountSnapshot exportAccount(String accountName);
+
+    /**
+     * Adds an account exported from another shard, with all its folders, rules and mails.
+     *
+     * @throws AccountAlreadyExistsException if the account already exists
+     */
+    void importAccount(AccountSnapshot snapshot);
+
+    /**
+     * Removes the account with all its folders, rules and mails.
+     *
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    void removeAccount(String accountName);
+}
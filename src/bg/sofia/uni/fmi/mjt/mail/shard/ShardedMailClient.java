@@ -0,0 +1,251 @@
+package bg.sofia.uni.fmi.mjt.mail.shard;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.MailClient;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountNotFoundException;
+import bg.sofia.uni.fmi.mjt.mail.parser.MailMetadata;
+import bg.sofia.uni.fmi.mjt.mail.parser.MailMetadataParser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Mail client whose accounts are spread across independent shards by consistent hashing of their names.
+ * Every operation on an account goes to the shard that owns it. A mail whose sender and receivers are on
+ * different shards is stored in the "/sent" folder by the sender's shard and delivered by the shards of
+ * the receivers - one {@link Delivery} per destination shard, with all of its receivers - so it is not
+ * atomic across shards: a failure may leave it delivered on some of them only.
+ * Adding a shard moves the accounts it now owns, with their folders, rules and mails; the other operations
+ * wait for the move to finish.
+ * The shards may persist their accounts, but the client does not: the ids of the shards and the ring are
+ * kept in memory only, so a restarted client must be given the same shards, in the order they were added.
+ */
+public class ShardedMailClient implements MailClient {
+    private static final int DEFAULT_VIRTUAL_NODES = 64;
+
+    private final ConsistentHashRing<ShardTransport> ring;
+    private final List<ShardTransport> shards = new ArrayList<>();
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<String, Account> emails = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ShardedMailClient(List<? extends ShardTransport> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param shards       the initial shards, all of them empty
+     * @param virtualNodes the number of points of every shard on the hash ring
+     */
+    public ShardedMailClient(List<? extends ShardTransport> shards, int virtualNodes) {
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("Shards are invalid!");
+        }
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+        for (ShardTransport shard : shards) {
+            if (shard == null) {
+                throw new IllegalArgumentException("Shards are invalid!");
+            }
+            place(shard);
+        }
+    }
+
+    @Override
+    public Account addNewAccount(String accountName, String email) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            Account account = shardOf(accountName).addNewAccount(accountName, email);
+            accounts.put(accountName.toLowerCase(), account);
+            emails.put(email, account);
+            return account;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public void createFolder(String accountName, String path) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            shardOf(accountName).createFolder(accountName, path);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public void addRule(String accountName, String folderPath, String ruleDefinition, int priority) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            shardOf(accountName).addRule(accountName, folderPath, ruleDefinition, priority);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public void receiveMail(String accountName, String mailMetadata, String mailContent) {
+        if (mailMetadata == null || mailMetadata.isEmpty() || mailMetadata.isBlank()) {
+            throw new IllegalArgumentException("Mail metadata is invalid!");
+        }
+        if (mailContent == null || mailContent.isEmpty() || mailContent.isBlank()) {
+            throw new IllegalArgumentException("Mail content is invalid!");
+        }
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            ShardTransport receiverShard = shardOf(accountName);
+            String senderEmail = MailMetadataParser.parse(mailMetadata).senderEmail();
+            if (senderEmail == null) {
+                receiverShard.receiveMail(accountName, mailMetadata, mailContent);
+                return;
+            }
+            Account sender = emails.get(senderEmail);
+            if (sender == null) {
+                throw new AccountNotFoundException("Account is not found!");
+            }
+            ShardTransport senderShard = shardOf(sender.name());
+            if (senderShard == receiverShard) {
+                receiverShard.receiveMail(accountName, mailMetadata, mailContent);
+                return;
+            }
+            receiverShard.deliver(List.of(new Delivery(sender, List.of(accountName), mailMetadata, mailContent)));
+            senderShard.addSentMail(sender.name(), mailMetadata, mailContent);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public Collection<Mail> getMailsFromFolder(String account, String folderPath) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return shardOf(account).getMailsFromFolder(account, folderPath);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Same as {@link MailClient#sendMail}. The sender's shard stores the mail and delivers it to its own
+     * accounts, then every other shard with any of the recipients gets a single delivery for all of them.
+     */
+    @Override
+    public void sendMail(String accountName, String mailMetadata, String mailContent) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            ShardTransport senderShard = shardOf(accountName);
+            senderShard.sendMail(accountName, mailMetadata, mailContent);
+            Account sender = accounts.get(accountName.toLowerCase());
+            Map<ShardTransport, List<String>> remote = remoteReceivers(sender, senderShard,
+                MailMetadataParser.parse(mailMetadata));
+            for (Map.Entry<ShardTransport, List<String>> batch : remote.entrySet()) {
+                batch.getKey().deliver(List.of(new Delivery(sender, batch.getValue(), mailMetadata, mailContent)));
+            }
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Adds a shard and moves to it the accounts it now owns: every account is exported from its old shard,
+     * imported by the new one, and only then removed from the old one.
+     *
+     * @return the number of moved accounts
+     */
+    public int addShard(ShardTransport shard) {
+        if (shard == null) {
+            throw new IllegalArgumentException("Shard is invalid!");
+        }
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            Map<String, ShardTransport> previous = new LinkedHashMap<>();
+            for (Account account : accounts.values()) {
+                previous.put(account.name(), shardOf(account.name()));
+            }
+            place(shard);
+            int moved = 0;
+            for (Map.Entry<String, ShardTransport> entry : previous.entrySet()) {
+                if (shardOf(entry.getKey()) == shard) {
+                    shard.importAccount(entry.getValue().exportAccount(entry.getKey()));
+                    entry.getValue().removeAccount(entry.getKey());
+                    moved++;
+                }
+            }
+            return moved;
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int shards() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return shards.size();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    private void place(ShardTransport shard) {
+        if (shards.contains(shard)) {
+            throw new IllegalArgumentException("Shard is already added!");
+        }
+        ring.add("shard-" + shards.size(), shard);
+        shards.add(shard);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the account name is null, empty or blank
+     */
+    private ShardTransport shardOf(String accountName) {
+        if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
+            throw new IllegalArgumentException("Account name is invalid!");
+        }
+        return ring.ownerOf(accountName.toLowerCase());
+    }
+
+    /**
+     * @return the receivers of the mail on every shard other than the sender's, by shard
+     */
+    private Map<ShardTransport, List<String>> remoteReceivers(Account sender, ShardTransport senderShard,
+                                                              MailMetadata metadata) {
+        Collection<Account> receivers = new ArrayList<>();
+        if (metadata.recipients().isEmpty()) {
+            receivers.addAll(accounts.values());
+        } else {
+            for (String recipient : metadata.recipients()) {
+                Account receiver = emails.get(recipient);
+                if (receiver != null) {
+                    receivers.add(receiver);
+                }
+            }
+        }
+        Map<ShardTransport, List<String>> remote = new LinkedHashMap<>();
+        for (Account receiver : receivers) {
+            ShardTransport shard = shardOf(receiver.name());
+            if (shard != senderShard && !receiver.equals(sender)) {
+                remote.computeIfAbsent(shard, ignored -> new ArrayList<>()).add(receiver.name());
+            }
+        }
+        return remote;
+    }
+}
@@ -0,0 +1,19 @@
+package bg.sofia.uni.fmi.mjt.mail.store;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full state of a single account.
+ *
+ * @param folderPaths paths of the created folders, every folder after its parent
+ * @param rules       the rules of the account
+ * @param mails       the mails of every folder that has any, in the order they were added
+ */
+public record AccountSnapshot(Account account, List<String> folderPaths, List<RuleDefinition> rules,
+                              Map<String, List<Mail>> mails) {
+}
@@ -0,0 +1,297 @@
+package bg.sofia.uni.fmi.mjt.mail.store;
+
+import bg.sofia.uni.fmi.mjt.mail.exceptions.StorageException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Durable store for the state of a mail client, kept in a directory as a write-ahead log and snapshots.
+ * Every mutating operation is applied and appended to the log in the same order for each account it
+ * changes, and returns only once its record is durable. Operations on different accounts are applied
+ * concurrently, each under the locks of its accounts, and are ordered only when they are appended.
+ * Operations that change the set of accounts are applied alone. Concurrent operations wait for the same
+ * group commit, so ingestion throughput is not bound by the latency of a single fsync.
+ * After every {@link StoreOptions#snapshotInterval()} records the next operation writes a snapshot of all accounts
+ * and the log segments it covers are deleted; recovery loads the newest snapshot and replays the log after it.
+ */
+public class MailStore implements AutoCloseable {
+    private static final int ACCOUNT_LOCKS = 64;
+
+    private final Path directory;
+    private final StoreOptions options;
+    private final ReadWriteLock accounts = new ReentrantReadWriteLock();
+    private final Lock[] accountLocks = new Lock[ACCOUNT_LOCKS];
+    private final Lock order = new ReentrantLock();
+    private final AtomicBoolean snapshotInProgress = new AtomicBoolean();
+    private volatile boolean recovering;
+    private volatile WriteAheadLog log;
+    private State state;
+    private volatile long snapshotSequence;
+    private volatile long lastSequence;
+
+    /**
+     * The state the store persists, provided by its client.
+     */
+    public interface State {
+        /**
+         * Restores the accounts of a snapshot into an empty state.
+         */
+        void restore(List<AccountSnapshot> accounts);
+
+        /**
+         * Applies a logged operation again during recovery.
+         */
+        void replay(Operation operation);
+
+        /**
+         * Waits for the work of logged operations that goes on after they return, so that {@link #capture}
+         * has less of it to wait for; called while other operations are still applied.
+         */
+        default void quiesce() {
+        }
+
+        /**
+         * @return the full current state; called while no operation is being applied
+         */
+        List<AccountSnapshot> capture();
+    }
+
+    /**
+     * @throws StorageException if the directory cannot be created
+     */
+    public MailStore(Path directory, StoreOptions options) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory is invalid!");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("Options are invalid!");
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new StorageException("Store directory cannot be created!", e);
+        }
+        this.directory = directory;
+        this.options = options;
+        for (int i = 0; i < ACCOUNT_LOCKS; i++) {
+            accountLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Loads the persisted state into the given one and starts logging its operations.
+     * Operations applied while the state is recovered are not logged again.
+     *
+     * @throws IllegalStateException if the store already recovered a state
+     * @throws StorageException      if the store cannot be read
+     */
+    public void recover(State state) {
+        accounts.writeLock().lock();
+        try {
+            if (this.state != null) {
+                throw new IllegalStateException("Store is already in use!");
+            }
+            recovering = true;
+            SnapshotFile.Snapshot snapshot = SnapshotFile.readLatest(directory);
+            if (snapshot != null) {
+                state.restore(snapshot.accounts());
+                snapshotSequence = snapshot.sequence();
+            }
+            long lastSequence = WriteAheadLog.replay(directory, snapshotSequence, state::replay);
+            log = new WriteAheadLog(directory, lastSequence, options);
+            this.lastSequence = lastSequence;
+            this.state = state;
+        } catch (IOException e) {
+            throw new StorageException("Store cannot be recovered!", e);
+        } finally {
+            recovering = false;
+            accounts.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies an operation that may change any account, e.g. add or remove one, alone, and logs the records
+     * it produced, then waits until they are durable. Nothing is logged if the operation throws.
+     *
+     * @param operation applies the operation to the state
+     * @param records   the records to log for the result of the operation
+     * @return the result of the operation
+     * @throws StorageException if the records cannot be logged
+     */
+    public <T> T apply(Supplier<T> operation, Function<T, List<Operation>> records) {
+        return apply(accounts.writeLock(), () -> List.of(), operation, records);
+    }
+
+    /**
+     * Applies an operation that changes only the given accounts, and logs the records it produced, then
+     * waits until they are durable. Operations on the same accounts are applied and logged in the same order;
+     * the ones on other accounts go on concurrently. Nothing is logged if the operation throws.
+     *
+     * @param accountNames the names of the accounts the operation changes; resolved once no account can be
+     *                     added or removed until the operation is applied
+     * @param operation    applies the operation to the state
+     * @param records      the records to log for the result of the operation
+     * @return the result of the operation
+     * @throws StorageException if the records cannot be logged
+     */
+    public <T> T apply(Supplier<? extends Collection<String>> accountNames, Supplier<T> operation,
+                       Function<T, List<Operation>> records) {
+        return apply(accounts.readLock(), accountNames, operation, records);
+    }
+
+    private <T> T apply(Lock accountsLock, Supplier<? extends Collection<String>> accountNames,
+                        Supplier<T> operation, Function<T, List<Operation>> records) {
+        if (recovering) {
+            return operation.get();
+        }
+        // taken before the operation, as a snapshot waits for the work that logged operations still do,
+        // which may include the work this operation starts once it returns
+        if (lastSequence - snapshotSequence >= options.snapshotInterval()) {
+            snapshot();
+        }
+        T result;
+        long sequence = 0;
+        accountsLock.lock();
+        try {
+            if (log == null) {
+                throw new IllegalStateException("Store is not recovered!");
+            }
+            boolean[] locked = lockAccounts(accountNames.get());
+            try {
+                result = operation.get();
+                List<Operation> logged = records.apply(result);
+                order.lock();
+                try {
+                    for (Operation record : logged) {
+                        sequence = log.append(record);
+                    }
+                    lastSequence = Math.max(lastSequence, sequence);
+                } finally {
+                    order.unlock();
+                }
+            } finally {
+                unlockAccounts(locked);
+            }
+        } finally {
+            accountsLock.unlock();
+        }
+        if (sequence > 0) {
+            log.awaitDurable(sequence);
+        }
+        return result;
+    }
+
+    /**
+     * Locks the accounts in the order of their locks, so that operations on overlapping accounts
+     * cannot deadlock.
+     *
+     * @return which of the locks are held
+     */
+    private boolean[] lockAccounts(Collection<String> accountNames) {
+        boolean[] locked = new boolean[ACCOUNT_LOCKS];
+        for (String accountName : accountNames) {
+            locked[Math.floorMod(accountName.toLowerCase().hashCode(), ACCOUNT_LOCKS)] = true;
+        }
+        for (int i = 0; i < ACCOUNT_LOCKS; i++) {
+            if (locked[i]) {
+                accountLocks[i].lock();
+            }
+        }
+        return locked;
+    }
+
+    private void unlockAccounts(boolean[] locked) {
+        for (int i = ACCOUNT_LOCKS - 1; i >= 0; i--) {
+            if (locked[i]) {
+                accountLocks[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the log it makes obsolete.
+     * The work still going on for logged operations is waited for first, while other operations go on;
+     * only capturing the state blocks them.
+     *
+     * @return false if another snapshot is being written at the moment
+     * @throws StorageException if the snapshot cannot be written
+     */
+    public boolean snapshot() {
+        if (!snapshotInProgress.compareAndSet(false, true)) {
+            return false;
+        }
+        SnapshotFile.Snapshot snapshot;
+        try {
+            if (log == null) {
+                throw new IllegalStateException("Store is not recovered!");
+            }
+            state.quiesce();
+            accounts.writeLock().lock();
+            try {
+                snapshot = capture();
+            } finally {
+                accounts.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            snapshotInProgress.set(false);
+            throw e;
+        }
+        writeSnapshot(snapshot);
+        return true;
+    }
+
+    /**
+     * Captures the state and starts a new log segment after it; only the capture blocks other operations,
+     * the snapshot itself is written afterwards.
+     */
+    private SnapshotFile.Snapshot capture() {
+        try {
+            List<AccountSnapshot> captured = state.capture();
+            long sequence = log.rotate();
+            snapshotSequence = sequence;
+            return new SnapshotFile.Snapshot(sequence, captured);
+        } catch (IOException | RuntimeException e) {
+            throw new StorageException("Snapshot cannot be taken!", e);
+        }
+    }
+
+    private void writeSnapshot(SnapshotFile.Snapshot snapshot) {
+        try {
+            SnapshotFile.write(directory, snapshot);
+            log.deleteSegmentsUpTo(snapshot.sequence());
+            SnapshotFile.deleteOlderThan(directory, snapshot.sequence());
+        } catch (IOException e) {
+            throw new StorageException("Snapshot cannot be written!", e);
+        } finally {
+            snapshotInProgress.set(false);
+        }
+    }
+
+    /**
+     * Writes out the pending records and closes the log.
+     */
+    @Override
+    public void close() {
+        accounts.writeLock().lock();
+        try {
+            if (log != null) {
+                log.close();
+            }
+        } catch (IOException e) {
+            throw new StorageException("Store cannot be closed!", e);
+        } finally {
+            accounts.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package bg.sofia.uni.fmi.mjt.mail.store;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.StorageException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A mutating {@link bg.sofia.uni.fmi.mjt.mail.MailClient} call, recorded with the arguments it was made with.
+ * Replaying the operations in log order rebuilds the state they produced.
+ */
+public record Operation(OperationType type, List<String> arguments) {
+    public static Operation addAccount(String accountName, String email) {
+        return new Operation(OperationType.ADD_ACCOUNT, List.of(accountName, email));
+    }
+
+    public static Operation createFolder(String accountName, String path) {
+        return new Operation(OperationType.CREATE_FOLDER, List.of(accountName, path));
+    }
+
+    public static Operation addRule(String accountName, String folderPath, String ruleDefinition, int priority) {
+        return new Operation(OperationType.ADD_RULE,
+            List.of(accountName, folderPath, ruleDefinition, Integer.toString(priority)));
+    }
+
+    public static Operation receiveMail(String accountName, String mailMetadata, String mailContent) {
+        return new Operation(OperationType.RECEIVE_MAIL, List.of(accountName, mailMetadata, mailContent));
+    }
+
+    public static Operation sendMail(String accountName, String mailMetadata, String mailContent) {
+        return new Operation(OperationType.SEND_MAIL, List.of(accountName, mailMetadata, mailContent));
+    }
+
+    /**
+     * The accounts the mail is delivered to follow the four fixed arguments.
+     */
+    public static Operation deliverMail(Account sender, Collection<String> accountNames, String mailMetadata,
+                                        String mailContent) {
+        List<String> arguments = new ArrayList<>(List.of(sender.emailAddress(), sender.name(), mailMetadata,
+            mailContent));
+        arguments.addAll(accountNames);
+        return new Operation(OperationType.DELIVER_MAIL, List.copyOf(arguments));
+    }
+
+    public static Operation addSentMail(String accountName, String mailMetadata, String mailContent) {
+        return new Operation(OperationType.ADD_SENT_MAIL, List.of(accountName, mailMetadata, mailContent));
+    }
+
+    public static Operation removeAccount(String accountName) {
+        return new Operation(OperationType.REMOVE_ACCOUNT, List.of(accountName));
+    }
+
+    /**
+     * The snapshot of the account is the only argument, encoded as Base64.
+     */
+    public static Operation importAccount(AccountSnapshot snapshot) {
+        return new Operation(OperationType.IMPORT_ACCOUNT, List.of(StoreCodec.encodeAccountSnapshot(snapshot)));
+    }
+
+    /**
+     * @return the account added by an {@link OperationType#IMPORT_ACCOUNT} operation
+     * @throws StorageException if the snapshot of the account is corrupted
+     */
+    public AccountSnapshot importedAccount() {
+        return StoreCodec.decodeAccountSnapshot(argument(0));
+    }
+
+    public String argument(int index) {
+        return arguments.get(index);
+    }
+}
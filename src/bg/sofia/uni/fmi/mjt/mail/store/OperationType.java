@@ -0,0 +1,13 @@
+package bg.sofia.uni.fmi.mjt.mail.store;
+
+public enum OperationType {
+    ADD_ACCOUNT,
+    CREATE_FOLDER,
+    ADD_RULE,
+    RECEIVE_MAIL,
+    SEND_MAIL,
+    DELIVER_MAIL,
+    ADD_SENT_MAIL,
+    REMOVE_ACCOUNT,
+    IMPORT_ACCOUNT
+}
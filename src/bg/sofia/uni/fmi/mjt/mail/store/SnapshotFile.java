@@ -0,0 +1,208 @@
+package bg.sofia.uni.fmi.mjt.mail.store;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot of all accounts as of a log sequence, named after that sequence. A snapshot is written
+ * to a temporary file, forced to the disk and then renamed, so a crash never leaves a partial one behind.
+ * Every distinct mail is written once, in a table the folders refer to by index, so a mail delivered
+ * to many accounts does not repeat its body in the snapshot.
+ */
+final class SnapshotFile {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String SNAPSHOT_FORMAT = SNAPSHOT_PREFIX + "%020d" + SNAPSHOT_SUFFIX;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x4D4A5453;
+    private static final int VERSION = 2;
+
+    record Snapshot(long sequence, List<AccountSnapshot> accounts) {
+    }
+
+    private SnapshotFile() {
+    }
+
+    static void write(Path directory, Snapshot snapshot) throws IOException {
+        Path target = directory.resolve(String.format(SNAPSHOT_FORMAT, snapshot.sequence()));
+        Path temporary = directory.resolve(target.getFileName() + TEMPORARY_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.sequence());
+            Map<Mail, Integer> mailIndexes = writeMails(out, snapshot.accounts());
+            out.writeInt(snapshot.accounts().size());
+            for (AccountSnapshot account : snapshot.accounts()) {
+                writeAccount(out, account, mailIndexes);
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(directory);
+    }
+
+    /**
+     * @return the newest intact snapshot, or null if there is none
+     */
+    static Snapshot readLatest(Path directory) throws IOException {
+        List<Long> sequences = snapshotSequences(directory);
+        for (int i = sequences.size() - 1; i >= 0; i--) {
+            Snapshot snapshot = read(directory.resolve(String.format(SNAPSHOT_FORMAT, sequences.get(i))));
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    static void deleteOlderThan(Path directory, long sequence) throws IOException {
+        for (long older : snapshotSequences(directory)) {
+            if (older < sequence) {
+                Files.deleteIfExists(directory.resolve(String.format(SNAPSHOT_FORMAT, older)));
+            }
+        }
+    }
+
+    /**
+     * Makes created, renamed and deleted files durable, where the platform supports it.
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories cannot be opened for syncing on every platform
+        }
+    }
+
+    private static Snapshot read(Path path) throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path))) {
+            CheckedInputStream checked = new CheckedInputStream(file, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long sequence = in.readLong();
+            List<Mail> mails = readMails(in);
+            int count = in.readInt();
+            List<AccountSnapshot> accounts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                accounts.add(readAccount(in, mails));
+            }
+            long expected = checked.getChecksum().getValue();
+            return new DataInputStream(file).readLong() == expected ? new Snapshot(sequence, accounts) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the index of every written mail
+     */
+    private static Map<Mail, Integer> writeMails(DataOutputStream out, List<AccountSnapshot> accounts)
+        throws IOException {
+        Map<Mail, Integer> indexes = new LinkedHashMap<>();
+        for (AccountSnapshot account : accounts) {
+            for (List<Mail> folderMails : account.mails().values()) {
+                for (Mail mail : folderMails) {
+                    indexes.putIfAbsent(mail, indexes.size());
+                }
+            }
+        }
+        out.writeInt(indexes.size());
+        for (Mail mail : indexes.keySet()) {
+            StoreCodec.writeMail(out, mail);
+        }
+        return indexes;
+    }
+
+    private static List<Mail> readMails(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Mail> mails = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mails.add(StoreCodec.readMail(in));
+        }
+        return mails;
+    }
+
+    private static void writeAccount(DataOutputStream out, AccountSnapshot account, Map<Mail, Integer> mailIndexes)
+        throws IOException {
+        StoreCodec.writeAccount(out, account.account());
+        StoreCodec.writeStrings(out, account.folderPaths());
+        out.writeInt(account.rules().size());
+        for (RuleDefinition rule : account.rules()) {
+            StoreCodec.writeRule(out, rule);
+        }
+        out.writeInt(account.mails().size());
+        for (Map.Entry<String, List<Mail>> folder : account.mails().entrySet()) {
+            StoreCodec.writeString(out, folder.getKey());
+            out.writeInt(folder.getValue().size());
+            for (Mail mail : folder.getValue()) {
+                out.writeInt(mailIndexes.get(mail));
+            }
+        }
+    }
+
+    private static AccountSnapshot readAccount(DataInputStream in, List<Mail> mailTable) throws IOException {
+        Account account = StoreCodec.readAccount(in);
+        List<String> folderPaths = StoreCodec.readStrings(in);
+        int ruleCount = in.readInt();
+        List<RuleDefinition> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(StoreCodec.readRule(in));
+        }
+        int folderCount = in.readInt();
+        Map<String, List<Mail>> mails = new LinkedHashMap<>();
+        for (int i = 0; i < folderCount; i++) {
+            String path = StoreCodec.readString(in);
+            int mailCount = in.readInt();
+            List<Mail> folderMails = new ArrayList<>(mailCount);
+            for (int j = 0; j < mailCount; j++) {
+                folderMails.add(mailTable.get(in.readInt()));
+            }
+            mails.put(path, folderMails);
+        }
+        return new AccountSnapshot(account, folderPaths, rules, mails);
+    }
+
+    private static List<Long> snapshotSequences(Path directory) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                    sequences.add(Long.parseLong(name, SNAPSHOT_PREFIX.length(),
+                        name.length() - SNAPSHOT_SUFFIX.length(), 10));
+                }
+            }
+        }
+        sequences.sort(null);
+        return sequences;
+    }
+}
@@ -0,0 +1,196 @@
+package bg.sofia.uni.fmi.mjt.mail.store;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+
+import bg.sofia.uni.fmi.mjt.mail.exceptions.StorageException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary encoding shared by the log and the snapshots. Strings are written as length-prefixed UTF-8,
+ * so mail bodies are not limited in size, and a negative length stands for null.
+ */
+final class StoreCodec {
+    private static final int NULL_LENGTH = -1;
+
+    private StoreCodec() {
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static List<String> readStrings(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    static Set<String> readStringSet(DataInput in) throws IOException {
+        List<String> values = readStrings(in);
+        return values == null ? null : new LinkedHashSet<>(values);
+    }
+
+    static void writeOperation(DataOutput out, Operation operation) throws IOException {
+        out.writeByte(operation.type().ordinal());
+        writeStrings(out, operation.arguments());
+    }
+
+    static Operation readOperation(DataInput in) throws IOException {
+        OperationType type = OperationType.values()[in.readUnsignedByte()];
+        return new Operation(type, List.copyOf(readStrings(in)));
+    }
+
+    static void writeAccount(DataOutput out, Account account) throws IOException {
+        writeString(out, account.emailAddress());
+        writeString(out, account.name());
+    }
+
+    static Account readAccount(DataInput in) throws IOException {
+        return new Account(readString(in), readString(in));
+    }
+
+    static void writeMail(DataOutput out, Mail mail) throws IOException {
+        writeAccount(out, mail.sender());
+        writeStrings(out, mail.recipients());
+        writeString(out, mail.subject());
+        writeString(out, mail.body());
+        out.writeBoolean(mail.received() != null);
+        if (mail.received() != null) {
+            out.writeLong(mail.received().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(mail.received().getNano());
+        }
+    }
+
+    static Mail readMail(DataInput in) throws IOException {
+        Account sender = readAccount(in);
+        Set<String> recipients = readStringSet(in);
+        String subject = readString(in);
+        String body = readString(in);
+        LocalDateTime received = in.readBoolean()
+            ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC)
+            : null;
+        return new Mail(sender, recipients, subject, body, received);
+    }
+
+    static void writeRule(DataOutput out, RuleDefinition rule) throws IOException {
+        writeString(out, rule.path());
+        writeStrings(out, rule.subjectKeywords());
+        writeStrings(out, rule.bodyKeywords());
+        writeStrings(out, rule.recipientEmails());
+        writeString(out, rule.fromEmail());
+        out.writeInt(rule.priority());
+    }
+
+    static RuleDefinition readRule(DataInput in) throws IOException {
+        return new RuleDefinition(readString(in), readStringSet(in), readStringSet(in), readStringSet(in),
+            readString(in), in.readInt());
+    }
+
+    /**
+     * @return the account with its folders, rules and mails, encoded as Base64 so it fits in a log record
+     */
+    static String encodeAccountSnapshot(AccountSnapshot snapshot) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeAccount(out, snapshot.account());
+            writeStrings(out, snapshot.folderPaths());
+            out.writeInt(snapshot.rules().size());
+            for (RuleDefinition rule : snapshot.rules()) {
+                writeRule(out, rule);
+            }
+            out.writeInt(snapshot.mails().size());
+            for (Map.Entry<String, List<Mail>> folder : snapshot.mails().entrySet()) {
+                writeString(out, folder.getKey());
+                out.writeInt(folder.getValue().size());
+                for (Mail mail : folder.getValue()) {
+                    writeMail(out, mail);
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageException("Account cannot be encoded!", e);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @throws StorageException if the account is not encoded by {@link #encodeAccountSnapshot}
+     */
+    static AccountSnapshot decodeAccountSnapshot(String encoded) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(encoded)))) {
+            Account account = readAccount(in);
+            List<String> folderPaths = readStrings(in);
+            int ruleCount = in.readInt();
+            List<RuleDefinition> rules = new ArrayList<>(ruleCount);
+            for (int i = 0; i < ruleCount; i++) {
+                rules.add(readRule(in));
+            }
+            int folderCount = in.readInt();
+            Map<String, List<Mail>> mails = new LinkedHashMap<>();
+            for (int i = 0; i < folderCount; i++) {
+                String path = readString(in);
+                int mailCount = in.readInt();
+                List<Mail> folderMails = new ArrayList<>(mailCount);
+                for (int j = 0; j < mailCount; j++) {
+                    folderMails.add(readMail(in));
+                }
+                mails.put(path, folderMails);
+            }
+            return new AccountSnapshot(account, folderPaths, rules, mails);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new StorageException("Account is corrupted!", e);
+        }
+    }
+}
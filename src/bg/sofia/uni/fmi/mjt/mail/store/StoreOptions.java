@@ -0,0 +1,32 @@
+package bg.sofia.uni.fmi.mjt.mail.store;
+
+import java.time.Duration;
+
+/**
+ * @param groupCommitSize  number of pending operations that are written to the log at once,
+ *                         without waiting for the group commit delay
+ * @param groupCommitDelay how long a group commit may wait for more operations before it is written;
+ *                         zero writes as soon as the previous commit is done
+ * @param fsync            whether every group commit is forced to the disk before it is acknowledged
+ * @param snapshotInterval number of logged operations after which a new snapshot is taken
+ */
+public record StoreOptions(int groupCommitSize, Duration groupCommitDelay, boolean fsync, long snapshotInterval) {
+    private static final int DEFAULT_GROUP_COMMIT_SIZE = 512;
+    private static final long DEFAULT_SNAPSHOT_INTERVAL = 100_000;
+
+    public StoreOptions {
+        if (groupCommitSize < 1) {
+            throw new IllegalArgumentException("Group commit size must be positive!");
+        }
+        if (groupCommitDelay == null || groupCommitDelay.isNegative()) {
+            throw new IllegalArgumentException("Group commit delay is invalid!");
+        }
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive!");
+        }
+    }
+
+    public static StoreOptions defaults() {
+        return new StoreOptions(DEFAULT_GROUP_COMMIT_SIZE, Duration.ZERO, true, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+}
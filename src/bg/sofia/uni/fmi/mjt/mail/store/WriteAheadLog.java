@@ -0,0 +1,309 @@
+package bg.sofia.uni.fmi.mjt.mail.store;
+
+import bg.sofia.uni.fmi.mjt.mail.exceptions.StorageException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of operations, split into segment files named after the sequence of their first record.
+ * Appends only fill an in-memory batch; a single writer thread writes the whole batch and forces it to
+ * the disk at once, so concurrent writers share one fsync (group commit).
+ * Every record is framed by its length and CRC32, so a torn write at the end of a segment is detected
+ * on recovery and the records before it are kept.
+ */
+final class WriteAheadLog implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SEGMENT_FORMAT = SEGMENT_PREFIX + "%020d" + SEGMENT_SUFFIX;
+
+    private final Path directory;
+    private final StoreOptions options;
+    private final Lock lock = new ReentrantLock();
+    private final Condition pendingWork = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final Thread writer;
+
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int pendingCount;
+    private long appendedSequence;
+    private long durableSequence;
+    private FileChannel segment;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Opens a new segment after the last recovered record.
+     */
+    WriteAheadLog(Path directory, long lastSequence, StoreOptions options) throws IOException {
+        this.directory = directory;
+        this.options = options;
+        this.appendedSequence = lastSequence;
+        this.durableSequence = lastSequence;
+        this.segment = openSegment(lastSequence + 1);
+        this.writer = new Thread(this::writeBatches, "mail-store-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return the sequence of the appended record; it is durable once {@link #awaitDurable} returns for it
+     */
+    long append(Operation operation) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new StorageException("Log is closed!");
+            }
+            long sequence = appendedSequence + 1;
+            writeRecord(new DataOutputStream(pending), sequence, operation);
+            appendedSequence = sequence;
+            // the first record wakes the idle writer, which then waits up to the group commit delay for
+            // more; a full batch cuts that wait short
+            if (++pendingCount == 1 || pendingCount >= options.groupCommitSize()) {
+                pendingWork.signal();
+            }
+            return sequence;
+        } catch (IOException e) {
+            throw new StorageException("Operation cannot be logged!", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            while (durableSequence < sequence && failure == null) {
+                committed.awaitUninterruptibly();
+            }
+            if (durableSequence < sequence) {
+                throw new StorageException("Log write failed!", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for everything appended so far to become durable and continues in a new segment.
+     * The caller must not append concurrently.
+     *
+     * @return the sequence of the last record before the new segment
+     */
+    long rotate() throws IOException {
+        lock.lock();
+        try {
+            awaitDurable(appendedSequence);
+            segment.close();
+            segment = openSegment(appendedSequence + 1);
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments that hold only records up to the sequence.
+     */
+    void deleteSegmentsUpTo(long sequence) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        for (int i = 0; i + 1 < starts.size() && starts.get(i + 1) <= sequence + 1; i++) {
+            Files.deleteIfExists(segmentPath(directory, starts.get(i)));
+        }
+    }
+
+    private void writeBatches() {
+        while (true) {
+            byte[] batch;
+            long batchSequence;
+            FileChannel channel;
+            lock.lock();
+            try {
+                while (pendingCount == 0 && !closed) {
+                    pendingWork.awaitUninterruptibly();
+                }
+                if (pendingCount == 0) {
+                    return;
+                }
+                long delay = options.groupCommitDelay().toNanos();
+                while (pendingCount < options.groupCommitSize() && delay > 0 && !closed) {
+                    delay = pendingWork.awaitNanos(delay);
+                }
+                batch = pending.toByteArray();
+                pending = new ByteArrayOutputStream(batch.length);
+                pendingCount = 0;
+                batchSequence = appendedSequence;
+                channel = segment;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            IOException error = write(channel, batch);
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = batchSequence;
+                }
+                committed.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private IOException write(FileChannel channel, byte[] batch) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (options.fsync()) {
+                channel.force(false);
+            }
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pendingWork.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.close();
+    }
+
+    private FileChannel openSegment(long firstSequence) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(directory, firstSequence), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        SnapshotFile.syncDirectory(directory);
+        return channel;
+    }
+
+    private static void writeRecord(DataOutputStream out, long sequence, Operation operation) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        payloadOut.writeLong(sequence);
+        StoreCodec.writeOperation(payloadOut, operation);
+        byte[] bytes = payload.toByteArray();
+        out.writeInt(bytes.length);
+        out.writeInt(checksum(bytes));
+        out.write(bytes);
+    }
+
+    /**
+     * Replays the records after the sequence, segment by segment. A segment is read up to its first
+     * truncated or corrupted record.
+     *
+     * @return the sequence of the last record in the log, or the given sequence if there is none after it
+     */
+    static long replay(Path directory, long afterSequence, Consumer<Operation> consumer) throws IOException {
+        long lastSequence = afterSequence;
+        List<Long> starts = segmentStarts(directory);
+        for (int i = 0; i < starts.size(); i++) {
+            if (i + 1 < starts.size() && starts.get(i + 1) <= afterSequence + 1) {
+                continue;
+            }
+            Path path = segmentPath(directory, starts.get(i));
+            long size = Files.size(path);
+            try (InputStream file = Files.newInputStream(path);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+                long position = 0;
+                while (true) {
+                    byte[] payload = readPayload(in, size - position);
+                    if (payload == null) {
+                        break;
+                    }
+                    position += Integer.BYTES * 2 + payload.length;
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    long sequence = record.readLong();
+                    if (sequence > lastSequence) {
+                        consumer.accept(StoreCodec.readOperation(record));
+                        lastSequence = sequence;
+                    }
+                }
+            }
+        }
+        return lastSequence;
+    }
+
+    /**
+     * @return the payload of the next record, or null at the end of the segment or at a damaged record
+     */
+    private static byte[] readPayload(DataInputStream in, long remaining) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > remaining - Integer.BYTES * 2) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            return checksum(payload) == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static Path segmentPath(Path directory, long firstSequence) {
+        return directory.resolve(String.format(SEGMENT_FORMAT, firstSequence));
+    }
+
+    private static List<Long> segmentStarts(Path directory) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    starts.add(Long.parseLong(name, SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length(), 10));
+                }
+            }
+        }
+        starts.sort(null);
+        return starts;
+    }
+}
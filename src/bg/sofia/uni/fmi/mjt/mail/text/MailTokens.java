@@ -0,0 +1,69 @@
+package bg.sofia.uni.fmi.mjt.mail.text;
+
+import bg.sofia.uni.fmi.mjt.mail.body.MailBody;
+
+/**
+ * The text and words of a mail's subject and body, computed on first use and then shared by every
+ * rule evaluation and index update that is given this object. The body is decoded at most once, and
+ * only if something needs it. Nothing is cached in the mail itself, so the decoded body is dropped
+ * together with this object.
+ */
+public final class MailTokens {
+    private final String subject;
+    private final MailBody body;
+    private volatile String bodyText;
+    private volatile TokenSet subjectTokens;
+    private volatile TokenSet bodyTokens;
+    private volatile WordPositions words;
+
+    public MailTokens(String subject, MailBody body) {
+        this.subject = subject;
+        this.body = body;
+    }
+
+    public String subjectText() {
+        return subject;
+    }
+
+    /**
+     * @return the text of the body, decoded on the first call
+     */
+    public String bodyText() {
+        String text = bodyText;
+        if (text == null) {
+            text = body.text();
+            bodyText = text;
+        }
+        return text;
+    }
+
+    /**
+     * @return the lower-cased words of the subject and then the body, with their positions
+     */
+    public WordPositions words() {
+        WordPositions positions = words;
+        if (positions == null) {
+            positions = new WordPositions(subject, bodyText());
+            words = positions;
+        }
+        return positions;
+    }
+
+    public TokenSet subject() {
+        TokenSet tokens = subjectTokens;
+        if (tokens == null) {
+            tokens = Tokenizer.tokenize(subject);
+            subjectTokens = tokens;
+        }
+        return tokens;
+    }
+
+    public TokenSet body() {
+        TokenSet tokens = bodyTokens;
+        if (tokens == null) {
+            tokens = Tokenizer.tokenize(bodyText());
+            bodyTokens = tokens;
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,134 @@
+package bg.sofia.uni.fmi.mjt.mail.text;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Open-addressing set of the distinct words of a text.
+ * Words are looked up by their position in the source text, so a String is only
+ * allocated the first time a word is seen.
+ */
+public final class TokenSet implements Iterable<String> {
+    private static final int MIN_CAPACITY = 8;
+    private static final int LOAD_FACTOR_DIVISOR = 2;
+    private static final int HASH_MULTIPLIER = 31;
+    private static final int HASH_SPREAD_SHIFT = 16;
+
+    private String[] table;
+    private int size;
+
+    TokenSet(int expectedSize) {
+        this.table = new String[tableSizeFor(expectedSize)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String token) {
+        String[] current = table;
+        int mask = current.length - 1;
+        for (int i = spread(token.hashCode()) & mask; current[i] != null; i = (i + 1) & mask) {
+            if (current[i].equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean containsAll(Collection<String> tokens) {
+        for (String token : tokens) {
+            if (!contains(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void add(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = HASH_MULTIPLIER * hash + text.charAt(i);
+        }
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        for (; table[slot] != null; slot = (slot + 1) & mask) {
+            if (regionEquals(table[slot], text, start, end)) {
+                return;
+            }
+        }
+        table[slot] = text.subSequence(start, end).toString();
+        if (++size * LOAD_FACTOR_DIVISOR > table.length) {
+            resize();
+        }
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < table.length && table[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < table.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String token = table[next];
+                next = advance(next + 1);
+                return token;
+            }
+        };
+    }
+
+    private void resize() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String token : old) {
+            if (token != null) {
+                int slot = spread(token.hashCode()) & mask;
+                while (table[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = token;
+            }
+        }
+    }
+
+    private static boolean regionEquals(String token, CharSequence text, int start, int end) {
+        if (token.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> HASH_SPREAD_SHIFT);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * LOAD_FACTOR_DIVISOR) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,62 @@
+package bg.sofia.uni.fmi.mjt.mail.text;
+
+/**
+ * Splits text into words the same way {@code split("\\W+")} does - a word is a maximal run of
+ * ASCII letters, digits and underscores - but in a single pass, without regular expressions,
+ * and without allocating anything for repeated words.
+ */
+public final class Tokenizer {
+    private static final int ASCII = 128;
+    private static final boolean[] WORD_CHARS = new boolean[ASCII];
+    private static final int AVERAGE_WORD_LENGTH = 6;
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            WORD_CHARS[c] = true;
+            WORD_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            WORD_CHARS[c] = true;
+        }
+        WORD_CHARS['_'] = true;
+    }
+
+    private Tokenizer() {
+    }
+
+    public static boolean isWordChar(char c) {
+        return c < ASCII && WORD_CHARS[c];
+    }
+
+    public static TokenSet tokenize(CharSequence text) {
+        TokenSet tokens = new TokenSet(text.length() / AVERAGE_WORD_LENGTH);
+        forEachWord(text, tokens::add);
+        return tokens;
+    }
+
+    /**
+     * Reports the bounds of every word of the text, in order, repeated words included.
+     */
+    public static void forEachWord(CharSequence text, WordConsumer consumer) {
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i < length; i++) {
+            if (isWordChar(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                consumer.accept(text, start, i);
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            consumer.accept(text, start, length);
+        }
+    }
+
+    @FunctionalInterface
+    public interface WordConsumer {
+        void accept(CharSequence text, int start, int end);
+    }
+}
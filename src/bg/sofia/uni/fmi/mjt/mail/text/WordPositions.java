@@ -0,0 +1,57 @@
+package bg.sofia.uni.fmi.mjt.mail.text;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Positions of the distinct words of a sequence of fields, lower-cased. Every field continues one
+ * position after the last word of the previous one, so no phrase spans two fields.
+ */
+public final class WordPositions {
+    private static final int FIELD_GAP = 1;
+
+    private final Map<String, PositionList> positions = new HashMap<>();
+    private int next;
+
+    public WordPositions(CharSequence... fields) {
+        for (CharSequence field : fields) {
+            Tokenizer.forEachWord(field, (text, start, end) ->
+                positions.computeIfAbsent(text.subSequence(start, end).toString().toLowerCase(Locale.ROOT),
+                    word -> new PositionList()).add(next++));
+            next += FIELD_GAP;
+        }
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * Reports every word with its positions, in increasing order, and the number of positions
+     * to take from the array.
+     */
+    public void forEach(PositionsConsumer consumer) {
+        positions.forEach((word, list) -> consumer.accept(word, list.values, list.size));
+    }
+
+    @FunctionalInterface
+    public interface PositionsConsumer {
+        void accept(String word, int[] positions, int count);
+    }
+
+    private static final class PositionList {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int size;
+
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+    }
+}
@@ -2,172 +2,637 @@ package bg.sofia.uni.fmi.mjt.mail.tree;
 
 import bg.sofia.uni.fmi.mjt.mail.Account;
 import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.MailPage;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.FolderNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.InvalidPathException;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.RuleAlreadyDefinedException;
+import bg.sofia.uni.fmi.mjt.mail.metrics.MailMetrics;
+import bg.sofia.uni.fmi.mjt.mail.metrics.MailMetrics.DeliveryRecorder;
+import bg.sofia.uni.fmi.mjt.mail.metrics.Phase;
 import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+import bg.sofia.uni.fmi.mjt.mail.rules.RuleEngine;
+import bg.sofia.uni.fmi.mjt.mail.search.MailSearchIndex;
+import bg.sofia.uni.fmi.mjt.mail.store.AccountSnapshot;
+import bg.sofia.uni.fmi.mjt.mail.text.MailTokens;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
-class MailFolder {
-    private final String name;
-    private final Set<Mail> mails;
-    private final Map<String, MailFolder> folders;
+/**
+ * Mailbox of a single account. Mutations are serialized by a per-account lock, so different
+ * accounts are updated fully in parallel; folders are backed by concurrent collections and
+ * are read without locking.
+ */
+public class AccountMail {
+    private static final String INBOX = "/inbox";
+    private static final String SENT = "/sent";
+    private static final int RULE_CHUNK_SIZE = 1024;
+
+    private final MailRepository repository;
+    private final MailFolder root;
+    private final MailFolder inbox;
+    private final MailFolder sent;
+    private final Map<String, MailFolder> foldersByPath = new ConcurrentHashMap<>();
+    private final Lock lock = new ReentrantLock();
+    private final Account account;
+    private final List<RuleDefinition> rules = new ArrayList<>();
+    private final RuleEngine<MailFolder> ruleEngine;
+    private volatile long rulesVersion;
+    private boolean removed;
+    private final MailMetrics metrics;
+    private final boolean timed;
+    private final DeliveryRecorder deliveries;
+    private final MailSearchIndex searchIndex = new MailSearchIndex();
 
-    public MailFolder(String name) {
-        this.name = name;
-        this.mails = new HashSet<>();
-        this.folders = new TreeMap<>();
+    public Account getAccount() {
+        return account;
     }
 
-    public String getName() {
-        return name;
+    public AccountMail(Account account) {
+        this(account, new MailRepository());
     }
 
-    public Set<Mail> getMails() {
-        return Set.copyOf(mails);
+    /**
+     * @param repository stores the mails of the account, shared with the other accounts of the client
+     */
+    public AccountMail(Account account, MailRepository repository) {
+        this(account, repository, MailMetrics.NOOP);
     }
 
-    public Map<String, MailFolder> getFolders() {
-        return Collections.unmodifiableMap(folders);
+    /**
+     * @param repository stores the mails of the account, shared with the other accounts of the client
+     * @param metrics    records the deliveries to the account, the evaluations of its rules and the phases
+     *                   of storing mails
+     */
+    public AccountMail(Account account, MailRepository repository, MailMetrics metrics) {
+        this.account = account;
+        this.repository = repository;
+        this.root = new MailFolder("", repository);
+        this.inbox = new MailFolder("inbox", repository);
+        this.sent = new MailFolder("sent", repository);
+        this.ruleEngine = new RuleEngine<>(metrics, account);
+        this.metrics = metrics;
+        this.timed = metrics.isEnabled();
+        this.deliveries = metrics.deliveryRecorder(account);
+        root.addFolder(inbox);
+        root.addFolder(sent);
+        foldersByPath.put(INBOX, inbox);
+        foldersByPath.put(SENT, sent);
     }
 
-    public void addFolder(MailFolder folder) {
-        this.folders.put(folder.getName(), folder);
+    /**
+     * Recreates a mailbox from its snapshot, without applying the rules to the restored mails again.
+     */
+    public static AccountMail restore(AccountSnapshot snapshot, MailRepository repository, MailMetrics metrics) {
+        AccountMail accountMail = new AccountMail(snapshot.account(), repository, metrics);
+        for (String path : snapshot.folderPaths()) {
+            accountMail.createFolder(path);
+        }
+        snapshot.mails().forEach((path, mails) -> {
+            List<Mail> stored = repository.internAll(mails);
+            accountMail.getFolder(accountMail.getFolderHandle(path)).addMails(stored)
+                .forEach(mail -> accountMail.index(mail, accountMail.tokenize(mail)));
+            repository.releaseAll(stored);
+        });
+        for (RuleDefinition rule : snapshot.rules()) {
+            accountMail.rules.add(rule);
+            accountMail.ruleEngine.addRule(rule, accountMail.getFolder(accountMail.getFolderHandle(rule.path())));
+            accountMail.rulesVersion++;
+        }
+        return accountMail;
     }
 
-    public void addMail(Mail mail) {
-        this.mails.add(mail);
+    /**
+     * Discards the mails of the removed account, giving back its references to them in the repository.
+     * The account takes no mails afterwards.
+     */
+    public void remove() {
+        lock.lock();
+        try {
+            removed = true;
+            root.releaseMails();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public void removeMails(Collection<Mail> mails) {
-        this.mails.removeAll(mails);
+    /**
+     * @return the folders, rules and mails of the account
+     */
+    public AccountSnapshot snapshot() {
+        lock.lock();
+        try {
+            List<String> folderPaths = new ArrayList<>();
+            Map<String, List<Mail>> mails = new LinkedHashMap<>();
+            collectFolders(root, "", folderPaths, mails);
+            folderPaths.remove(INBOX);
+            folderPaths.remove(SENT);
+            return new AccountSnapshot(account, folderPaths, List.copyOf(rules), mails);
+        } finally {
+            lock.unlock();
+        }
     }
-}
 
-public class AccountMail {
-    private final MailFolder root = new MailFolder("");
-    private final Account account;
-    private final Map<RuleDefinition, String> rules;
+    private static void collectFolders(MailFolder folder, String path, List<String> folderPaths,
+                                       Map<String, List<Mail>> mails) {
+        for (MailFolder child : folder.getFolders().values()) {
+            String childPath = path + "/" + child.getName();
+            folderPaths.add(childPath);
+            List<Mail> childMails = child.getMailsInAddedOrder();
+            if (!childMails.isEmpty()) {
+                mails.put(childPath, childMails);
+            }
+            collectFolders(child, childPath, folderPaths, mails);
+        }
+    }
 
-    public Account getAccount() {
-        return account;
+    public boolean pathExists(String path) {
+        return findFolder(path) != null;
     }
 
-    public AccountMail(Account account) {
-        this.account = account;
-        this.rules = new TreeMap<>(Comparator.comparing(RuleDefinition::priority).reversed());
-        final MailFolder inbox = new MailFolder("inbox");
-        final MailFolder sent = new MailFolder("sent");
-        root.addFolder(inbox);
-        root.addFolder(sent);
+    /**
+     * @throws FolderNotFoundException if the folder does not exist
+     */
+    public FolderHandle getFolderHandle(String path) {
+        MailFolder folder = findFolder(path);
+        if (folder == null) {
+            throw new FolderNotFoundException("Folder is not found!");
+        }
+        return new FolderHandle(this, folder, path);
     }
 
-    public boolean pathExists(String path) {
+    /**
+     * Resolves a folder through the index of created paths, falling back to a walk from the root
+     * for paths spelled differently than they were created.
+     *
+     * @return the folder, or null if it does not exist
+     */
+    private MailFolder findFolder(String path) {
+        MailFolder folder = foldersByPath.get(path);
+        if (folder != null) {
+            return folder;
+        }
         String[] folders = path.split("/");
         MailFolder currentFolder = root;
-        for (int i = 1; i < folders.length; i++) {
-            if (!currentFolder.getFolders().containsKey(folders[i].strip())) {
-                return false;
-            }
+        for (int i = 1; i < folders.length && currentFolder != null; i++) {
             currentFolder = currentFolder.getFolders().get(folders[i].strip());
         }
-        return true;
+        return currentFolder;
     }
 
-    private MailFolder getFolder(String path) {
-        MailFolder current = root;
-        String[] folders = path.split("/");
-        for (int i = 1; i < folders.length; i++) {
-            current = current.getFolders().get(folders[i]);
+    private MailFolder getFolder(FolderHandle handle) {
+        if (handle.owner() != this) {
+            throw new IllegalArgumentException("Folder belongs to another account!");
         }
-        return current;
+        return handle.folder();
     }
 
     public void createFolder(String path) {
-        int lastIndexOfSlash = path.lastIndexOf("/");
-        String folderName = path.substring(lastIndexOfSlash + 1);
-        String previousDirectories = path.substring(0, lastIndexOfSlash);
-        if (!pathExists(previousDirectories)) {
-            throw new InvalidPathException("Path is invalid!");
-        }
-        MailFolder currentFolder = getFolder(previousDirectories);
-        if (currentFolder.getFolders().containsKey(folderName)) {
-            throw new FolderAlreadyExistsException(String.format("Folder %s already exists!", folderName));
+        lock.lock();
+        try {
+            int lastIndexOfSlash = path.lastIndexOf("/");
+            String folderName = path.substring(lastIndexOfSlash + 1);
+            String previousDirectories = path.substring(0, lastIndexOfSlash);
+            MailFolder currentFolder = findFolder(previousDirectories);
+            if (currentFolder == null) {
+                throw new InvalidPathException("Path is invalid!");
+            }
+            if (currentFolder.getFolders().containsKey(folderName)) {
+                throw new FolderAlreadyExistsException(String.format("Folder %s already exists!", folderName));
+            }
+            MailFolder newFolder = new MailFolder(folderName, repository);
+            currentFolder.addFolder(newFolder);
+            foldersByPath.put(path, newFolder);
+        } finally {
+            lock.unlock();
         }
-        MailFolder newFolder = new MailFolder(folderName);
-        currentFolder.addFolder(newFolder);
     }
 
+    /**
+     * Adds the rule and moves the matching mails from the inbox before returning.
+     */
     public void addRule(RuleDefinition rule) {
-        if (rules.containsKey(rule)) {
-            if (!rules.get(rule).equals(rule.path())) {
-                throw new RuleAlreadyDefinedException("Rule is already defined!");
+        addRule(rule, Runnable::run).completion().join();
+    }
+
+    /**
+     * Adds the rule, which applies to every mail delivered from now on, and moves the matching mails
+     * already in the inbox on the executor. The candidates are looked up in the search index, and are
+     * then checked and moved {@value #RULE_CHUNK_SIZE} at a time, each chunk under the account lock,
+     * so deliveries proceed between the chunks.
+     *
+     * @throws RuleAlreadyDefinedException if a rule with the same conditions and priority and another folder exists
+     * @throws FolderNotFoundException     if the folder of the rule does not exist
+     */
+    public RuleApplication addRule(RuleDefinition rule, Executor executor) {
+        RetroactiveWork work = register(rule);
+        if (work.candidates().isEmpty()) {
+            return RuleApplication.completed();
+        }
+        RuleApplication application = new RuleApplication(work.candidates().size());
+        executor.execute(() -> applyInChunks(rule, work, application));
+        return application;
+    }
+
+    /**
+     * Same as {@link #addRule(RuleDefinition, Executor)}, but the candidates are split into partitions that
+     * are evaluated in parallel on the pool, without holding the account lock, and the matching mails are
+     * then moved to the folder of the rule at once.
+     */
+    public RuleApplication addRuleInParallel(RuleDefinition rule, ForkJoinPool pool) {
+        RetroactiveWork work = register(rule);
+        if (work.candidates().isEmpty()) {
+            return RuleApplication.completed();
+        }
+        RuleApplication application = new RuleApplication(work.candidates().size());
+        pool.execute(() -> applyInParallel(rule, work, application));
+        return application;
+    }
+
+    /**
+     * Inbox mails a new rule still has to be applied to.
+     */
+    private record RetroactiveWork(MailFolder target, List<Mail> candidates) {
+    }
+
+    /**
+     * Adds the rule to the engine, so it routes every delivery from now on.
+     *
+     * @return the target of the rule and the inbox mails that may match it; none if the rule is already defined
+     */
+    private RetroactiveWork register(RuleDefinition rule) {
+        lock.lock();
+        try {
+            for (RuleDefinition existing : rules) {
+                if (existing.hasSameConditions(rule)) {
+                    if (!existing.path().equals(rule.path())) {
+                        throw new RuleAlreadyDefinedException("Rule is already defined!");
+                    }
+                    return new RetroactiveWork(null, List.of());
+                }
             }
-            return;
+            MailFolder target = getFolder(getFolderHandle(rule.path()));
+            rules.add(rule);
+            ruleEngine.addRule(rule, target);
+            rulesVersion++;
+            return new RetroactiveWork(target, target == inbox ? List.of() : retroactiveCandidates(rule));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the inbox mails that may match the rule: those containing all the keywords of one of its
+     * keyword conditions, from its sender, in the order they were added to the inbox - which is the order
+     * they were indexed in, as mails are only ever moved out of the inbox
+     */
+    private List<Mail> retroactiveCandidates(RuleDefinition rule) {
+        if (!rule.recipientEmails().isEmpty() && !rule.recipientEmails().contains(account.emailAddress())) {
+            return List.of();
         }
-        Queue<Mail> mails = new LinkedList<>();
-        MailFolder inbox = getFolder("/inbox");
-        for (Mail mail : inbox.getMails()) {
-            if (rule.matchesMail(mail, account.emailAddress())) {
-                moveMail(mail, rule.path());
-                mails.add(mail);
+        String sender = rule.fromEmail().isEmpty() ? null : rule.fromEmail();
+        List<Set<String>> conditions = new ArrayList<>(2);
+        for (Set<String> keywords : Arrays.asList(rule.subjectKeywords(), rule.bodyKeywords())) {
+            if (keywords == null) {
+                continue;
             }
+            if (keywords.isEmpty()) {
+                return inbox.getMailsInAddedOrder();
+            }
+            conditions.add(keywords);
         }
-        if (mails.size() > 0) {
-            inbox.removeMails(mails);
+        List<Mail> candidates = searchIndex.findAny(conditions, sender);
+        candidates.removeIf(mail -> !inbox.contains(mail));
+        return candidates;
+    }
+
+    private void applyInChunks(RuleDefinition rule, RetroactiveWork work, RuleApplication application) {
+        List<Mail> candidates = work.candidates();
+        try {
+            for (int from = 0; from < candidates.size(); from += RULE_CHUNK_SIZE) {
+                List<Mail> chunk = candidates.subList(from, Math.min(from + RULE_CHUNK_SIZE, candidates.size()));
+                int moved = 0;
+                lock.lock();
+                try {
+                    for (Mail mail : chunk) {
+                        if (!removed && inbox.contains(mail)
+                            && rule.matchesMail(mail, repository.tokens(mail), account.emailAddress())
+                            && inbox.moveMail(work.target(), mail)) {
+                            moved++;
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                application.recordChunk(chunk.size(), moved);
+            }
+            application.complete();
+        } catch (RuntimeException e) {
+            application.fail(e);
         }
-        rules.put(rule, rule.path());
     }
 
-    private boolean mailExists(String path, Mail mail) {
-        MailFolder folder = getFolder(path);
-        if (!folder.getMails().contains(mail)) {
-            return false;
+    private void applyInParallel(RuleDefinition rule, RetroactiveWork work, RuleApplication application) {
+        try {
+            List<Mail> matching = new MatchingMails(rule, account.emailAddress(), repository, work.candidates(),
+                application).invoke();
+            int moved;
+            lock.lock();
+            try {
+                moved = removed ? 0 : inbox.moveAll(work.target(), matching);
+            } finally {
+                lock.unlock();
+            }
+            application.recordChunk(0, moved);
+            application.complete();
+        } catch (RuntimeException e) {
+            application.fail(e);
         }
-        return true;
     }
 
-    public Set<Mail> getMailsFromFolder(String path) {
-        MailFolder currentFolder = root;
-        String[] folders = path.split("/");
-        for (int i = 1; i < folders.length; i++) {
-            currentFolder = currentFolder.getFolders().get(folders[i]);
+    /**
+     * Evaluates a rule on a range of mails, splitting it in halves until the ranges are small enough.
+     */
+    private static class MatchingMails extends RecursiveTask<List<Mail>> {
+        private static final long serialVersionUID = 1L;
+        private static final int PARTITION_SIZE = 512;
+
+        private final RuleDefinition rule;
+        private final String receiverEmail;
+        private final MailRepository repository;
+        private final List<Mail> mails;
+        private final RuleApplication application;
+
+        MatchingMails(RuleDefinition rule, String receiverEmail, MailRepository repository, List<Mail> mails,
+                      RuleApplication application) {
+            this.rule = rule;
+            this.receiverEmail = receiverEmail;
+            this.repository = repository;
+            this.mails = mails;
+            this.application = application;
         }
-        return currentFolder.getMails();
+
+        @Override
+        protected List<Mail> compute() {
+            if (mails.size() <= PARTITION_SIZE) {
+                List<Mail> matching = new ArrayList<>();
+                for (Mail mail : mails) {
+                    if (rule.matchesMail(mail, repository.tokens(mail), receiverEmail)) {
+                        matching.add(mail);
+                    }
+                }
+                application.recordChunk(mails.size(), 0);
+                return matching;
+            }
+            int middle = mails.size() / 2;
+            MatchingMails left =
+                new MatchingMails(rule, receiverEmail, repository, mails.subList(0, middle), application);
+            MatchingMails right =
+                new MatchingMails(rule, receiverEmail, repository, mails.subList(middle, mails.size()), application);
+            left.fork();
+            List<Mail> matching = new ArrayList<>(right.compute());
+            matching.addAll(left.join());
+            return matching;
+        }
+    }
+
+    private boolean mailExists(MailFolder folder, Mail mail) {
+        return folder.contains(mail);
+    }
+
+    public Set<Mail> getMailsFromFolder(String path) {
+        return getMailsFromFolder(getFolderHandle(path));
     }
 
-    private void moveMail(Mail mail, String path) {
-        MailFolder folder = getFolder(path);
-        folder.addMail(mail);
+    public Set<Mail> getMailsFromFolder(FolderHandle folder) {
+        return getFolder(folder).getMails();
+    }
+
+    /**
+     * @param pageSize          maximum number of mails in the page
+     * @param continuationToken token of the previous page, or null for the first page
+     * @return the next mails of the folder, newest received first
+     * @throws IllegalArgumentException if the continuation token is invalid
+     */
+    public MailPage getMailsPage(FolderHandle folder, int pageSize, String continuationToken) {
+        return getFolder(folder).getPage(pageSize, continuationToken);
+    }
+
+    /**
+     * @return at most count of the most recently received mails of the folder, newest first
+     */
+    public List<Mail> getNewestMails(FolderHandle folder, int count) {
+        return getFolder(folder).getNewest(count);
+    }
+
+    /**
+     * @return the mails of the folder received between the two moments, both inclusive, newest first
+     */
+    public List<Mail> getMailsReceivedBetween(FolderHandle folder, LocalDateTime from, LocalDateTime to) {
+        return getFolder(folder).getReceivedBetween(from, to);
+    }
+
+    /**
+     * @return at most limit of the received and sent mails matching the query, newest first
+     * @see MailSearchIndex#search(String, int)
+     */
+    public List<Mail> search(String query, int limit) {
+        return searchIndex.search(query, limit);
     }
 
     public void receiveMail(Mail mail) {
-        String path = "/inbox";
-        for (RuleDefinition rule : rules.keySet()) {
-            if (rule.matchesMail(mail, account.emailAddress())) {
-                path = rule.path();
-                break;
+        long start = timed ? System.nanoTime() : 0;
+        Mail stored = repository.intern(mail);
+        try {
+            receive(stored, tokenize(stored), null, start);
+        } finally {
+            repository.release(stored);
+        }
+    }
+
+    /**
+     * Finds the folder the rules route a received mail to, without taking the account lock, so it can be
+     * done ahead of {@link #deliver}. The mail is stored and tokenized here, once for both.
+     *
+     * @return the classification, which must be delivered or released
+     */
+    public Classification classify(Mail mail) {
+        long version = rulesVersion;
+        Mail stored = repository.intern(mail);
+        try {
+            MailTokens tokens = tokenize(stored);
+            return new Classification(this, repository, stored, tokens, ruleTarget(stored, tokens), version);
+        } catch (RuntimeException e) {
+            repository.release(stored);
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #receiveMail} for the classified mail, but the mail is stored in the folder it was
+     * classified into, unless rules were added to the account since then, in which case it is classified again.
+     * Releases the classification.
+     */
+    public void deliver(Classification classification) {
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            receive(classification.mail(), classification.tokens(), classification, start);
+        } finally {
+            classification.release();
+        }
+    }
+
+    private void receive(Mail stored, MailTokens tokens, Classification classification, long start) {
+        lock.lock();
+        try {
+            if (removed) {
+                return;
+            }
+            MailFolder target = classification != null && classification.owner() == this
+                && classification.rulesVersion() == rulesVersion
+                ? classification.destination() : ruleTarget(stored, tokens);
+            MailFolder destination = accepting(target, stored);
+            long insertStart = timed ? System.nanoTime() : 0;
+            if (destination != null && destination.addMail(stored)) {
+                index(stored, tokens);
             }
+            if (timed) {
+                metrics.recordPhase(Phase.FOLDER_INSERT, System.nanoTime() - insertStart);
+            }
+        } finally {
+            lock.unlock();
         }
-        if (mailExists(path, mail)) {
-            return;
+        if (timed) {
+            deliveries.recordDelivery(1, System.nanoTime() - start);
         }
-        if (!path.equals("/inbox")) {
-            moveMail(mail, path);
+    }
+
+    /**
+     * Receives a batch of mails, taking the account lock once and updating each destination folder once.
+     */
+    public void receiveMails(Collection<Mail> mails) {
+        if (mails.isEmpty()) {
             return;
         }
-        if (mail.recipients().size() > 0 && !mail.recipients().contains(account.emailAddress())) {
-            return;
+        long start = timed ? System.nanoTime() : 0;
+        List<Mail> stored = repository.internAll(mails);
+        Map<Mail, MailTokens> tokens = tokenizeAll(stored);
+        lock.lock();
+        try {
+            if (removed) {
+                return;
+            }
+            Map<MailFolder, List<Mail>> destinations = new IdentityHashMap<>();
+            for (Mail mail : stored) {
+                MailFolder destination = accepting(ruleTarget(mail, tokens.get(mail)), mail);
+                if (destination != null) {
+                    destinations.computeIfAbsent(destination, folder -> new ArrayList<>()).add(mail);
+                }
+            }
+            long insertStart = timed ? System.nanoTime() : 0;
+            destinations.forEach((folder, batch) -> folder.addMails(batch)
+                .forEach(mail -> index(mail, tokens.get(mail))));
+            if (timed) {
+                metrics.recordPhase(Phase.FOLDER_INSERT, System.nanoTime() - insertStart);
+            }
+        } finally {
+            lock.unlock();
+            repository.releaseAll(stored);
+        }
+        if (timed) {
+            deliveries.recordDelivery(mails.size(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the folder of the first rule matching the mail, or the inbox if none does
+     */
+    private MailFolder ruleTarget(Mail mail, MailTokens tokens) {
+        long start = timed ? System.nanoTime() : 0;
+        MailFolder destination = ruleEngine.findTarget(mail, tokens, account.emailAddress());
+        if (timed) {
+            metrics.recordPhase(Phase.RULE_MATCH, System.nanoTime() - start);
+        }
+        return destination == null ? inbox : destination;
+    }
+
+    /**
+     * @return the folder the mail should be stored in, or null if the mail should not be stored
+     */
+    private MailFolder accepting(MailFolder destination, Mail mail) {
+        if (mailExists(destination, mail)) {
+            return null;
+        }
+        if (destination == inbox && mail.recipients().size() > 0
+            && !mail.recipients().contains(account.emailAddress())) {
+            return null;
+        }
+        return destination;
+    }
+
+    /**
+     * @return the tokens of the mail, with the positions of its words already found, so that only the
+     * postings of the search index are updated while the account lock is held
+     */
+    private MailTokens tokenize(Mail stored) {
+        MailTokens tokens = repository.tokens(stored);
+        tokens.words();
+        return tokens;
+    }
+
+    private Map<Mail, MailTokens> tokenizeAll(List<Mail> stored) {
+        Map<Mail, MailTokens> tokens = new IdentityHashMap<>();
+        for (Mail mail : stored) {
+            tokens.put(mail, tokenize(mail));
         }
-        getFolder("/inbox").addMail(mail);
+        return tokens;
+    }
+
+    private void index(Mail stored, MailTokens tokens) {
+        searchIndex.add(stored, tokens);
     }
 
     public void sendMail(Mail mail) {
-        if (mailExists("/sent", mail)) {
-            return;
+        Mail stored = repository.intern(mail);
+        MailTokens tokens = tokenize(stored);
+        lock.lock();
+        try {
+            long start = timed ? System.nanoTime() : 0;
+            if (!removed && sent.addMail(stored)) {
+                index(stored, tokens);
+            }
+            if (timed) {
+                metrics.recordPhase(Phase.FOLDER_INSERT, System.nanoTime() - start);
+            }
+        } finally {
+            lock.unlock();
+            repository.release(stored);
+        }
+    }
+
+    public void sendMails(Collection<Mail> mails) {
+        List<Mail> stored = repository.internAll(mails);
+        Map<Mail, MailTokens> tokens = tokenizeAll(stored);
+        lock.lock();
+        try {
+            long start = timed ? System.nanoTime() : 0;
+            if (!removed) {
+                sent.addMails(stored).forEach(mail -> index(mail, tokens.get(mail)));
+            }
+            if (timed) {
+                metrics.recordPhase(Phase.FOLDER_INSERT, System.nanoTime() - start);
+            }
+        } finally {
+            lock.unlock();
+            repository.releaseAll(stored);
         }
-        getFolder("/sent").addMail(mail);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package bg.sofia.uni.fmi.mjt.mail.tree;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.text.MailTokens;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Opaque result of {@link AccountMail#classify}: the folder the rules of an account route a mail to,
+ * as of the rules the account had at the time. It holds the stored mail with its tokens until it is
+ * delivered with {@link AccountMail#deliver} or {@link #release released}, so delivering it spares storing,
+ * tokenizing and matching the mail again, unless a rule was added in between.
+ */
+public final class Classification {
+    private final AccountMail owner;
+    private final MailRepository repository;
+    private final Mail mail;
+    private final MailTokens tokens;
+    private final MailFolder destination;
+    private final long rulesVersion;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    Classification(AccountMail owner, MailRepository repository, Mail mail, MailTokens tokens,
+                   MailFolder destination, long rulesVersion) {
+        this.owner = owner;
+        this.repository = repository;
+        this.mail = mail;
+        this.tokens = tokens;
+        this.destination = destination;
+        this.rulesVersion = rulesVersion;
+    }
+
+    AccountMail owner() {
+        return owner;
+    }
+
+    Mail mail() {
+        return mail;
+    }
+
+    MailTokens tokens() {
+        return tokens;
+    }
+
+    MailFolder destination() {
+        return destination;
+    }
+
+    long rulesVersion() {
+        return rulesVersion;
+    }
+
+    /**
+     * Gives back the reference to the stored mail, e.g. when the mail is not delivered after all.
+     * Does nothing if it was already given back.
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            repository.release(mail);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package bg.sofia.uni.fmi.mjt.mail.tree;
+
+/**
+ * Opaque reference to a folder of an {@link AccountMail}. Resolving a path once and reusing
+ * the handle spares every later access the path parsing and the walk down the folder tree.
+ */
+public final class FolderHandle {
+    private final AccountMail owner;
+    private final MailFolder folder;
+    private final String path;
+
+    FolderHandle(AccountMail owner, MailFolder folder, String path) {
+        this.owner = owner;
+        this.folder = folder;
+        this.path = path;
+    }
+
+    AccountMail owner() {
+        return owner;
+    }
+
+    MailFolder folder() {
+        return folder;
+    }
+
+    public String path() {
+        return path;
+    }
+}
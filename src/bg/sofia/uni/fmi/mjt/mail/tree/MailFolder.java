@@ -0,0 +1,264 @@
+package bg.sofia.uni.fmi.mjt.mail.tree;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.MailPage;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Folder of an account. It holds only the ids of its mails in the shared {@link MailRepository},
+ * in a primitive membership map and ordered by recency, and resolves them to mails on read.
+ * Reads do not lock the folder, so an id whose mail was released meanwhile is skipped.
+ */
+class MailFolder {
+    private static final long NOT_RECEIVED = Long.MIN_VALUE;
+    private static final String TOKEN_SEPARATOR = ".";
+
+    private final String name;
+    private final MailRepository repository;
+    private final MailIdMap sequences;
+    private final ConcurrentNavigableMap<MailKey, Boolean> mailsByRecency;
+    private final AtomicLong sequence;
+    private final Map<String, MailFolder> folders;
+    private final Set<Mail> view;
+
+    /**
+     * Position of a mail in the folder: newest received first, and the latest added first among
+     * mails received at the same time. The id takes no part in the order, as sequences are unique.
+     */
+    private record MailKey(long received, long sequence, long id) implements Comparable<MailKey> {
+        @Override
+        public int compareTo(MailKey other) {
+            int byReceived = Long.compare(other.received, received);
+            return byReceived != 0 ? byReceived : Long.compare(other.sequence, sequence);
+        }
+    }
+
+    public MailFolder(String name, MailRepository repository) {
+        this.name = name;
+        this.repository = repository;
+        this.sequences = new MailIdMap();
+        this.mailsByRecency = new ConcurrentSkipListMap<>();
+        this.sequence = new AtomicLong();
+        this.folders = new ConcurrentSkipListMap<>();
+        this.view = new MailsView();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a read-only live view of the mails in the folder
+     */
+    public Set<Mail> getMails() {
+        return view;
+    }
+
+    public boolean contains(Mail mail) {
+        long id = repository.find(mail);
+        return id != Mail.NO_ID && sequences.containsKey(id);
+    }
+
+    public MailPage getPage(int pageSize, String continuationToken) {
+        Iterator<MailKey> iterator = continuationToken == null
+            ? mailsByRecency.keySet().iterator()
+            : mailsByRecency.tailMap(parseToken(continuationToken), false).keySet().iterator();
+        List<Mail> page = new ArrayList<>(Math.min(pageSize, sequences.size()));
+        MailKey last = null;
+        while (page.size() < pageSize && iterator.hasNext()) {
+            last = iterator.next();
+            addResolved(page, last.id());
+        }
+        String nextToken = iterator.hasNext() ? last.received() + TOKEN_SEPARATOR + last.sequence() : null;
+        return new MailPage(page, nextToken);
+    }
+
+    public List<Mail> getNewest(int count) {
+        List<Mail> newest = new ArrayList<>(Math.min(count, sequences.size()));
+        Iterator<MailKey> iterator = mailsByRecency.keySet().iterator();
+        while (newest.size() < count && iterator.hasNext()) {
+            addResolved(newest, iterator.next().id());
+        }
+        return newest;
+    }
+
+    public List<Mail> getReceivedBetween(LocalDateTime from, LocalDateTime to) {
+        MailKey newest = new MailKey(epochSecond(to), Long.MAX_VALUE, Mail.NO_ID);
+        MailKey oldest = new MailKey(epochSecond(from), Long.MIN_VALUE, Mail.NO_ID);
+        return resolve(mailsByRecency.subMap(newest, true, oldest, true).keySet());
+    }
+
+    /**
+     * @return the mails of the folder in the order they were added
+     */
+    public List<Mail> getMailsInAddedOrder() {
+        return resolve(mailsByRecency.descendingKeySet());
+    }
+
+    private List<Mail> resolve(Collection<MailKey> keys) {
+        List<Mail> resolved = new ArrayList<>(keys.size());
+        for (MailKey key : keys) {
+            addResolved(resolved, key.id());
+        }
+        return resolved;
+    }
+
+    private void addResolved(List<Mail> mails, long id) {
+        Mail mail = repository.get(id);
+        if (mail != null) {
+            mails.add(mail);
+        }
+    }
+
+    private static long epochSecond(LocalDateTime received) {
+        return received == null ? NOT_RECEIVED : received.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static MailKey parseToken(String continuationToken) {
+        int separator = continuationToken.indexOf(TOKEN_SEPARATOR);
+        try {
+            return new MailKey(Long.parseLong(continuationToken.substring(0, separator)),
+                Long.parseLong(continuationToken.substring(separator + 1)), Mail.NO_ID);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Continuation token is invalid!", e);
+        }
+    }
+
+    public Map<String, MailFolder> getFolders() {
+        return Collections.unmodifiableMap(folders);
+    }
+
+    public void addFolder(MailFolder folder) {
+        this.folders.put(folder.getName(), folder);
+    }
+
+    /**
+     * @param mail a mail interned in the repository of the folder, which keeps a reference to it once added
+     * @return true if the mail was added, false if the folder already contains it
+     */
+    public boolean addMail(Mail mail) {
+        if (!addMail(mail.id(), mail)) {
+            return false;
+        }
+        repository.intern(mail);
+        return true;
+    }
+
+    private boolean addMail(long id, Mail mail) {
+        long next = sequence.get() + 1;
+        if (!sequences.putIfAbsent(id, next)) {
+            return false;
+        }
+        sequence.set(next);
+        mailsByRecency.put(new MailKey(epochSecond(mail.received()), next, id), Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * @return the mails that were added, in the order given
+     */
+    public List<Mail> addMails(Collection<Mail> mails) {
+        List<Mail> added = new ArrayList<>(mails.size());
+        for (Mail mail : mails) {
+            if (addMail(mail)) {
+                added.add(mail);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * @return false if the mail is not in this folder
+     */
+    public boolean moveMail(MailFolder target, Mail mail) {
+        if (!sequences.containsKey(mail.id())) {
+            return false;
+        }
+        if (!target.addMail(mail.id(), mail)) {
+            repository.release(mail);
+        }
+        long removed = sequences.remove(mail.id());
+        mailsByRecency.remove(new MailKey(epochSecond(mail.received()), removed, mail.id()));
+        return true;
+    }
+
+    /**
+     * Moves the mails which are still in this folder to the target folder, in one pass.
+     *
+     * @return the number of moved mails
+     */
+    public int moveAll(MailFolder target, Collection<Mail> mails) {
+        int moved = 0;
+        for (Mail mail : mails) {
+            if (moveMail(target, mail)) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Gives back the references of the folder and its subfolders to their mails, once they are discarded.
+     */
+    public void releaseMails() {
+        for (MailFolder folder : folders.values()) {
+            folder.releaseMails();
+        }
+        for (Mail mail : getMailsInAddedOrder()) {
+            repository.release(mail);
+        }
+    }
+
+    private class MailsView extends AbstractSet<Mail> {
+        @Override
+        public Iterator<Mail> iterator() {
+            PrimitiveIterator.OfLong ids = sequences.ids();
+            return new Iterator<>() {
+                private Mail next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && ids.hasNext()) {
+                        next = repository.get(ids.nextLong());
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Mail next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Mail mail = next;
+                    next = null;
+                    return mail;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return sequences.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Mail mail && MailFolder.this.contains(mail);
+        }
+    }
+}
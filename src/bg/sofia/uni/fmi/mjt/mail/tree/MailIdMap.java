@@ -0,0 +1,168 @@
+package bg.sofia.uni.fmi.mjt.mail.tree;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Open-addressing map from mail ids to a long value, with keys and values interleaved in a single
+ * {@code long[]}. Lookups and updates do not allocate, and an entry takes two array slots
+ * instead of a hash map node with boxed keys.
+ * Changes must come from a single thread at a time (the account lock), while any number of threads
+ * may read concurrently without locking: entries are published with release writes, removed entries
+ * become tombstones instead of being shifted, and a grown table is published as a whole.
+ */
+final class MailIdMap {
+    static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long EMPTY = Mail.NO_ID;
+    private static final long REMOVED = -1;
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int MAX_LOAD_PERCENT = 50;
+    private static final int PERCENT = 100;
+
+    private volatile long[] slots = new long[INITIAL_CAPACITY * 2];
+    private volatile int size;
+    private int used;
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(long id) {
+        return get(id) != NO_VALUE;
+    }
+
+    /**
+     * @return the value of the id, or {@link #NO_VALUE} if it is not in the map
+     */
+    long get(long id) {
+        long[] table = slots;
+        int mask = table.length / 2 - 1;
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            long key = (long) SLOTS.getAcquire(table, slot * 2);
+            if (key == id) {
+                return (long) SLOTS.getAcquire(table, slot * 2 + 1);
+            }
+            if (key == EMPTY) {
+                return NO_VALUE;
+            }
+        }
+    }
+
+    /**
+     * @return false if the id is already in the map
+     */
+    boolean putIfAbsent(long id, long value) {
+        if (containsKey(id)) {
+            return false;
+        }
+        if ((used + 1) * PERCENT > slots.length / 2 * MAX_LOAD_PERCENT) {
+            rehash();
+        }
+        long[] table = slots;
+        int mask = table.length / 2 - 1;
+        int slot = hash(id) & mask;
+        long key = table[slot * 2];
+        while (key != EMPTY && key != REMOVED) {
+            slot = (slot + 1) & mask;
+            key = table[slot * 2];
+        }
+        if (key == EMPTY) {
+            used++;
+        }
+        SLOTS.setRelease(table, slot * 2 + 1, value);
+        SLOTS.setRelease(table, slot * 2, id);
+        size = size + 1;
+        return true;
+    }
+
+    /**
+     * @return the value the id had, or {@link #NO_VALUE} if it was not in the map
+     */
+    long remove(long id) {
+        long[] table = slots;
+        int mask = table.length / 2 - 1;
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            long key = table[slot * 2];
+            if (key == id) {
+                SLOTS.setRelease(table, slot * 2, REMOVED);
+                size = size - 1;
+                return table[slot * 2 + 1];
+            }
+            if (key == EMPTY) {
+                return NO_VALUE;
+            }
+        }
+    }
+
+    /**
+     * @return the ids in the map; ids changed during the iteration may or may not be reported
+     */
+    PrimitiveIterator.OfLong ids() {
+        long[] table = slots;
+        return new PrimitiveIterator.OfLong() {
+            private int slot = advance(0);
+
+            private int advance(int from) {
+                int next = from;
+                while (next < table.length / 2) {
+                    long key = (long) SLOTS.getAcquire(table, next * 2);
+                    if (key != EMPTY && key != REMOVED) {
+                        break;
+                    }
+                    next++;
+                }
+                return next;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < table.length / 2;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long id = (long) SLOTS.getAcquire(table, slot * 2);
+                slot = advance(slot + 1);
+                return id;
+            }
+        };
+    }
+
+    /**
+     * Copies the live entries into a new table, twice as large unless most of the used slots are tombstones.
+     */
+    private void rehash() {
+        long[] table = slots;
+        int capacity = table.length / 2;
+        int newCapacity = size * 2 * PERCENT > capacity * MAX_LOAD_PERCENT ? capacity * 2 : capacity;
+        long[] grown = new long[newCapacity * 2];
+        int mask = newCapacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            long key = table[i * 2];
+            if (key != EMPTY && key != REMOVED) {
+                int slot = hash(key) & mask;
+                while (grown[slot * 2] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                grown[slot * 2] = key;
+                grown[slot * 2 + 1] = table[i * 2 + 1];
+            }
+        }
+        used = size;
+        slots = grown;
+    }
+
+    private static int hash(long id) {
+        long mixed = id * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
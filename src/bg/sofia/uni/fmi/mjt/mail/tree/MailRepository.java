@@ -0,0 +1,215 @@
+package bg.sofia.uni.fmi.mjt.mail.tree;
+
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.body.MailBodyStore;
+import bg.sofia.uni.fmi.mjt.mail.text.MailTokens;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed store of the mails of a client, shared by all of its accounts.
+ * Every distinct mail is kept once and gets a monotonically increasing id when it is first interned;
+ * folders hold only those ids, so a mail sent to many accounts costs a single instance, however many
+ * folders it is in. A mail is looked up by its content only when it is interned before it is stored,
+ * once per delivery: the stored mail is then passed to every account, and found by its id.
+ * The body of a mail is handed to the {@link MailBodyStore} only when the mail is stored for the first time.
+ * Stored mails are reference-counted: every folder holding a mail keeps one reference, and so does every
+ * {@link #intern} until it is {@link #release released}, so a mail is dropped once no folder holds it.
+ * The tokens of the most recently used mails are cached, so a mail delivered to many accounts is decoded
+ * and tokenized once; the cache is bounded, so bodies kept off the heap do not stay decoded.
+ */
+public class MailRepository {
+    private static final int TOKEN_CACHE_SIZE = 256;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Map<MailContent, Entry> mailsByContent = new ConcurrentHashMap<>();
+    private final Map<Long, Entry> mailsById = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong(Mail.NO_ID);
+    private final MailBodyStore bodies;
+    private final Map<Long, MailTokens> recentTokens = new LinkedHashMap<>(TOKEN_CACHE_SIZE, LOAD_FACTOR, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, MailTokens> eldest) {
+            return size() > TOKEN_CACHE_SIZE;
+        }
+    };
+
+    public MailRepository() {
+        this(MailBodyStore.HEAP);
+    }
+
+    public MailRepository(MailBodyStore bodies) {
+        this.bodies = bodies;
+    }
+
+    /**
+     * Takes a reference to the stored mail, which must be given back with {@link #release}.
+     * A mail stored by this repository is found by its id; any other mail by its content.
+     *
+     * @return the stored mail, which is stored now and given a new id if there was none with the same content
+     */
+    public Mail intern(Mail mail) {
+        Entry stored = storedEntry(mail);
+        if (stored != null && stored.acquire()) {
+            return stored.mail;
+        }
+        MailContent content = new MailContent(mail);
+        while (true) {
+            Entry entry = mailsByContent.computeIfAbsent(content, key -> store(key, mail));
+            if (entry.acquire()) {
+                return entry.mail;
+            }
+            mailsByContent.remove(content, entry);
+        }
+    }
+
+    private Entry store(MailContent key, Mail mail) {
+        Mail stored = mail.withId(lastId.incrementAndGet(), bodies.store(mail.content()));
+        key.mail = stored;
+        Entry entry = new Entry(stored, key);
+        mailsById.put(stored.id(), entry);
+        return entry;
+    }
+
+    /**
+     * @return the entry of a mail stored by this repository, or null for any other mail
+     */
+    private Entry storedEntry(Mail mail) {
+        if (mail.id() == Mail.NO_ID) {
+            return null;
+        }
+        Entry entry = mailsById.get(mail.id());
+        return entry != null && entry.mail == mail ? entry : null;
+    }
+
+    /**
+     * @return the stored mails, in the same order
+     */
+    public List<Mail> internAll(Collection<Mail> mails) {
+        List<Mail> stored = new ArrayList<>(mails.size());
+        for (Mail mail : mails) {
+            stored.add(intern(mail));
+        }
+        return stored;
+    }
+
+    /**
+     * Gives back a reference taken by {@link #intern}, and drops the mail with its tokens if it was the last one.
+     *
+     * @param mail a mail returned by {@link #intern}
+     */
+    public void release(Mail mail) {
+        Entry entry = storedEntry(mail);
+        if (entry == null || !entry.release()) {
+            return;
+        }
+        mailsById.remove(mail.id(), entry);
+        mailsByContent.remove(entry.content, entry);
+        synchronized (recentTokens) {
+            recentTokens.remove(mail.id());
+        }
+    }
+
+    public void releaseAll(Collection<Mail> mails) {
+        for (Mail mail : mails) {
+            release(mail);
+        }
+    }
+
+    /**
+     * @return the id of the mail, or {@link Mail#NO_ID} if no mail with its content is stored
+     */
+    public long find(Mail mail) {
+        if (storedEntry(mail) != null) {
+            return mail.id();
+        }
+        Entry stored = mailsByContent.get(new MailContent(mail));
+        return stored == null ? Mail.NO_ID : stored.mail.id();
+    }
+
+    /**
+     * @return the stored mail with the id, or null if there is none
+     */
+    public Mail get(long id) {
+        Entry entry = mailsById.get(id);
+        return entry == null ? null : entry.mail;
+    }
+
+    /**
+     * @return the tokens of the mail, shared with the other recent users of a stored mail
+     */
+    public MailTokens tokens(Mail mail) {
+        if (mail.id() == Mail.NO_ID) {
+            return new MailTokens(mail.subject(), mail.content());
+        }
+        synchronized (recentTokens) {
+            return recentTokens.computeIfAbsent(mail.id(), id -> new MailTokens(mail.subject(), mail.content()));
+        }
+    }
+
+    public int size() {
+        return mailsById.size();
+    }
+
+    /**
+     * Stored mail with the number of its references. Once they drop to zero it is dropped, and can no longer
+     * be acquired even by a thread that found it just before.
+     */
+    private static final class Entry {
+        private final Mail mail;
+        private final MailContent content;
+        private int references;
+        private boolean dropped;
+
+        private Entry(Mail mail, MailContent content) {
+            this.mail = mail;
+            this.content = content;
+        }
+
+        synchronized boolean acquire() {
+            if (dropped) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+
+        /**
+         * @return true if that was the last reference
+         */
+        synchronized boolean release() {
+            dropped = --references == 0;
+            return dropped;
+        }
+    }
+
+    /**
+     * Key of a mail by its content. Its hash is computed once, and comparing it decodes a body only if the
+     * hashes of two different mails collide or a mail is a copy of a stored one. Once the mail is stored, the
+     * key refers to the stored mail, so it does not keep the body of the mail it was made from.
+     */
+    private static final class MailContent {
+        private final int hash;
+        private volatile Mail mail;
+
+        private MailContent(Mail mail) {
+            this.mail = mail;
+            this.hash = mail.contentHashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MailContent other && hash == other.hash && mail.hasSameContent(other.mail);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package bg.sofia.uni.fmi.mjt.mail.tree;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of applying a newly added rule to the mails already in the inbox.
+ * The rule routes new deliveries as soon as it is added; the inbox is processed afterwards, in chunks,
+ * so the account keeps receiving mail in between.
+ */
+public class RuleApplication {
+    private final int candidates;
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger moved = new AtomicInteger();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    RuleApplication(int candidates) {
+        this.candidates = candidates;
+    }
+
+    static RuleApplication completed() {
+        RuleApplication application = new RuleApplication(0);
+        application.complete();
+        return application;
+    }
+
+    /**
+     * @return the number of inbox mails that may match the rule and are checked
+     */
+    public int candidates() {
+        return candidates;
+    }
+
+    public int processed() {
+        return processed.get();
+    }
+
+    /**
+     * @return the number of mails moved to the folder of the rule so far
+     */
+    public int moved() {
+        return moved.get();
+    }
+
+    /**
+     * @return the processed fraction of the candidates, between 0 and 1
+     */
+    public double progress() {
+        return candidates == 0 ? 1 : (double) processed.get() / candidates;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * @return a future completed once every candidate is processed
+     */
+    public CompletableFuture<Void> completion() {
+        return completion.thenApply(ignored -> null);
+    }
+
+    void recordChunk(int chunkProcessed, int chunkMoved) {
+        processed.addAndGet(chunkProcessed);
+        moved.addAndGet(chunkMoved);
+    }
+
+    void complete() {
+        completion.complete(null);
+    }
+
+    void fail(Throwable failure) {
+        completion.completeExceptionally(failure);
+    }
+}
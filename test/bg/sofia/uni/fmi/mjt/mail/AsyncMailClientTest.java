@@ -0,0 +1,65 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.delivery.Backpressure;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncMailClientTest {
+    private static final int MAILS = 500;
+
+    private final Outlook outlook = new Outlook();
+
+    @Test
+    void testSendMailDeliversInOrderPerAccount() {
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("ivan", "ivan@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/mjt");
+        outlook.addRule("xhist", "/inbox/mjt", "subject-includes: mjt", 1);
+
+        List<CompletableFuture<Void>> sent = new ArrayList<>();
+        try (AsyncMailClient client = new AsyncMailClient(outlook, 4, 16, Backpressure.BLOCK)) {
+            for (int i = 0; i < MAILS; i++) {
+                sent.add(client.sendMail("stoyo", "subject: " + (i % 2 == 0 ? "mjt " : "lab ") + i + "\n" +
+                    "recipients: xhist@gmail.com, ivan@fmi.bg\n" +
+                    "received: 2022-12-08 14:14", "Welcome!"));
+            }
+            CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).join();
+        }
+
+        assertEquals(MAILS, outlook.getMailsFromFolder("stoyo", "/sent").size());
+        assertEquals(MAILS, outlook.getMailsFromFolder("ivan", "/inbox").size());
+        assertEquals(MAILS / 2, outlook.getMailsFromFolder("xhist", "/inbox").size());
+        List<Mail> newest = outlook.getNewestMails("xhist", "/inbox/mjt", MAILS);
+        assertEquals(MAILS / 2, newest.size());
+        for (int i = 0; i < newest.size(); i++) {
+            assertEquals("mjt " + (MAILS - 2 - 2 * i), newest.get(i).subject(), "Mails should arrive in order");
+        }
+    }
+
+    @Test
+    void testReceiveMailAndInvalidParameters() {
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+
+        try (AsyncMailClient client = new AsyncMailClient(outlook, 2, 4, Backpressure.REJECT)) {
+            client.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: mjt", "Welcome!").join();
+            CompletionException invalid = assertThrows(CompletionException.class,
+                () -> client.sendMail("xhist", null, "Welcome!").join());
+            CompletionException missing = assertThrows(CompletionException.class,
+                () -> client.sendMail("ivan", "subject: mjt", "Welcome!").join());
+
+            assertInstanceOf(IllegalArgumentException.class, invalid.getCause());
+            assertInstanceOf(AccountNotFoundException.class, missing.getCause());
+        }
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox").size());
+        assertEquals(1, outlook.getMailsFromFolder("stoyo", "/sent").size());
+    }
+}
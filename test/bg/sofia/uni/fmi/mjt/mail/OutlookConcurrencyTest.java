@@ -0,0 +1,171 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.delivery.DeliveryOrdering;
+import bg.sofia.uni.fmi.mjt.mail.delivery.ParallelDelivery;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutlookConcurrencyTest {
+    private static final int ACCOUNTS = 8;
+    private static final int THREADS = 16;
+    private static final int MAILS_PER_THREAD = 250;
+
+    private final Outlook outlook = new Outlook();
+
+    private static String name(int account) {
+        return "user" + account;
+    }
+
+    private static String email(int account) {
+        return "user" + account + "@fmi.bg";
+    }
+
+    private static String metadata(String sender, String recipient, int thread, int mail) {
+        return (sender == null ? "" : "sender: " + sender + "\n") +
+            "subject: Thread " + thread + " mail " + mail + "\n" +
+            "recipients: " + recipient + "\n" +
+            "received: 2022-12-08 14:14";
+    }
+
+    @Test
+    void testSendAndReceiveMailFromManyThreads() throws Exception {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            outlook.addNewAccount(name(i), email(i));
+            outlook.createFolder(name(i), "/inbox/odd");
+            outlook.addRule(name(i), "/inbox/odd", "subject-or-body-includes: odd", 5);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int m = 0; m < MAILS_PER_THREAD; m++) {
+                    int sender = (thread + m) % ACCOUNTS;
+                    int recipient = (sender + 1) % ACCOUNTS;
+                    String content = m % 2 == 0 ? "even" : "odd";
+                    if (thread % 2 == 0) {
+                        outlook.sendMail(name(sender), metadata(null, email(recipient), thread, m),
+                            content + " mail body");
+                    } else {
+                        outlook.receiveMail(name(recipient), metadata(email(sender), email(recipient), thread, m),
+                            content + " mail body");
+                    }
+                    outlook.getMailsFromFolder(name(recipient), "/inbox");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        int sent = 0;
+        int received = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            sent += outlook.getMailsFromFolder(name(i), "/sent").size();
+            received += outlook.getMailsFromFolder(name(i), "/inbox").size();
+            received += outlook.getMailsFromFolder(name(i), "/inbox/odd").size();
+        }
+        assertEquals(THREADS * MAILS_PER_THREAD, sent);
+        assertEquals(THREADS * MAILS_PER_THREAD, received);
+    }
+
+    @Test
+    void testAddNewAccountFromManyThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    outlook.addNewAccount("xhist", "xhist@gmail.com");
+                    return true;
+                } catch (RuntimeException e) {
+                    return false;
+                }
+            }));
+        }
+        int created = 0;
+        for (Future<Boolean> future : futures) {
+            created += future.get() ? 1 : 0;
+        }
+        executor.shutdown();
+        assertEquals(1, created);
+    }
+
+    @Test
+    void testSendMailAsyncToDistributionList() throws Exception {
+        final int recipients = 500;
+        final int mails = 5;
+        try (ParallelDelivery delivery = new ParallelDelivery(THREADS, DeliveryOrdering.PER_ACCOUNT_FIFO)) {
+            Outlook parallelOutlook = new Outlook(delivery);
+            parallelOutlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+            StringJoiner list = new StringJoiner(", ");
+            for (int i = 0; i < recipients; i++) {
+                parallelOutlook.addNewAccount(name(i), email(i));
+                list.add(email(i));
+            }
+            List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+            for (int m = 0; m < mails; m++) {
+                deliveries.add(parallelOutlook.sendMailAsync("stoyo",
+                    metadata(null, list.toString(), 0, m), "Announcement " + m));
+            }
+            CompletableFuture.allOf(deliveries.toArray(CompletableFuture[]::new)).get();
+
+            assertEquals(mails, parallelOutlook.getMailsFromFolder("stoyo", "/sent").size());
+            for (int i = 0; i < recipients; i++) {
+                assertEquals(mails, parallelOutlook.getMailsFromFolder(name(i), "/inbox").size());
+            }
+        }
+    }
+
+    @Test
+    void testSendMailAsyncKeepsTheOrderOfEachAccount() throws Exception {
+        final int accounts = 10;
+        final int window = 6;
+        final int mails = 200;
+        try (ParallelDelivery delivery = new ParallelDelivery(THREADS, DeliveryOrdering.PER_ACCOUNT_FIFO)) {
+            Outlook parallelOutlook = new Outlook(delivery);
+            parallelOutlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+            for (int i = 0; i < accounts; i++) {
+                parallelOutlook.addNewAccount(name(i), email(i));
+            }
+            List<List<String>> expected = new ArrayList<>();
+            for (int i = 0; i < accounts; i++) {
+                expected.add(new ArrayList<>());
+            }
+            List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+            for (int m = 0; m < mails; m++) {
+                StringJoiner list = new StringJoiner(", ");
+                for (int i = m % (accounts - window + 1); i < m % (accounts - window + 1) + window; i++) {
+                    list.add(email(i));
+                    expected.get(i).add("Thread 0 mail " + m);
+                }
+                deliveries.add(parallelOutlook.sendMailAsync("stoyo", metadata(null, list.toString(), 0, m),
+                    "Update " + m));
+            }
+            CompletableFuture.allOf(deliveries.toArray(CompletableFuture[]::new)).get();
+
+            for (int i = 0; i < accounts; i++) {
+                List<String> inbox = new ArrayList<>();
+                for (Mail mail : parallelOutlook.getNewestMails(name(i), "/inbox", mails)) {
+                    inbox.add(0, mail.subject());
+                }
+                assertEquals(expected.get(i), inbox, "Mails should reach " + name(i) + " in the order they were sent");
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package bg.sofia.uni.fmi.mjt.mail;
+
+import bg.sofia.uni.fmi.mjt.mail.body.MappedBodyStore;
+import bg.sofia.uni.fmi.mjt.mail.store.MailStore;
+import bg.sofia.uni.fmi.mjt.mail.store.StoreOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutlookPersistenceTest {
+    @TempDir
+    Path directory;
+
+    private static String metadata(String sender, int mail) {
+        return "sender: " + sender + "\n" +
+            "subject: Mail " + mail + "\n" +
+            "received: 2022-12-0" + (mail % 9 + 1) + " 14:14";
+    }
+
+    private static void populate(Outlook outlook, int mails) {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/mjt");
+        outlook.addRule("xhist", "/inbox/mjt", "subject-includes: mjt", 5);
+        for (int i = 0; i < mails; i++) {
+            outlook.receiveMail("xhist", metadata("stoyo@fmi.bg", i), "Body " + i);
+        }
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: mjt exam", "Welcome!");
+    }
+
+    private static Set<String> subjects(Outlook outlook, String account, String path) {
+        return outlook.getMailsFromFolder(account, path).stream().map(Mail::subject).collect(Collectors.toSet());
+    }
+
+    private static List<Path> files(Path directory, String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    @Test
+    void testRecoverReplaysLog() {
+        try (MailStore store = new MailStore(directory, StoreOptions.defaults())) {
+            populate(new Outlook(store), 5);
+        }
+        try (MailStore store = new MailStore(directory, StoreOptions.defaults())) {
+            Outlook outlook = new Outlook(store);
+            assertEquals(5, outlook.getMailsFromFolder("xhist", "/inbox").size());
+            assertEquals(Set.of("mjt exam"), subjects(outlook, "xhist", "/inbox/mjt"));
+            assertEquals(6, outlook.getMailsFromFolder("stoyo", "/sent").size());
+
+            outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: mjt results", "Passed!");
+            assertEquals(Set.of("mjt exam", "mjt results"), subjects(outlook, "xhist", "/inbox/mjt"),
+                "Recovered rules should apply to new mails");
+        }
+    }
+
+    @Test
+    void testGroupCommitDelayDoesNotWaitForAFullBatch() {
+        StoreOptions options = new StoreOptions(512, Duration.ofMillis(5), true, 1000);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try (MailStore store = new MailStore(directory, options)) {
+                populate(new Outlook(store), 3);
+            }
+        });
+        try (MailStore store = new MailStore(directory, options)) {
+            assertEquals(3, new Outlook(store).getMailsFromFolder("xhist", "/inbox").size());
+        }
+    }
+
+    @Test
+    void testRecoverReplaysImportedAccount() throws IOException {
+        Outlook source = new Outlook();
+        populate(source, 3);
+        try (MailStore store = new MailStore(directory, StoreOptions.defaults())) {
+            Outlook outlook = new Outlook(store);
+            outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+            outlook.importAccount(source.exportAccount("xhist"));
+            outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: mjt results", "Passed!");
+        }
+        assertTrue(files(directory, "snapshot-").isEmpty(), "The import should be logged, not snapshotted");
+        try (MailStore store = new MailStore(directory, StoreOptions.defaults())) {
+            Outlook outlook = new Outlook(store);
+            assertEquals(3, outlook.getMailsFromFolder("xhist", "/inbox").size());
+            assertEquals(Set.of("mjt exam", "mjt results"), subjects(outlook, "xhist", "/inbox/mjt"));
+        }
+    }
+
+    @Test
+    void testRecoverFromSnapshotAndLogTail() throws IOException {
+        StoreOptions options = new StoreOptions(4, Duration.ZERO, true, 10);
+        try (MailStore store = new MailStore(directory, options)) {
+            populate(new Outlook(store), 25);
+        }
+        assertEquals(1, files(directory, "snapshot-").size());
+        try (MailStore store = new MailStore(directory, options)) {
+            Outlook outlook = new Outlook(store);
+            assertEquals(25, outlook.getMailsFromFolder("xhist", "/inbox").size());
+            assertEquals(Set.of("mjt exam"), subjects(outlook, "xhist", "/inbox/mjt"));
+            Mail received = outlook.getMailsFromFolder("xhist", "/inbox/mjt").iterator().next();
+            assertTrue(outlook.getMailsFromFolder("stoyo", "/sent").stream().anyMatch(mail -> mail == received),
+                "A restored mail should be shared by the sender and the recipient");
+            assertThrows(IllegalArgumentException.class, () -> new MailStore(directory, null));
+        }
+    }
+
+    @Test
+    void testRecoverConcurrentOperationsOnDifferentAccounts() throws Exception {
+        StoreOptions options = new StoreOptions(8, Duration.ZERO, true, 20);
+        int accounts = 4;
+        int mails = 30;
+        try (MailStore store = new MailStore(directory, options)) {
+            Outlook outlook = new Outlook(store);
+            outlook.addNewAccount("hub", "hub@fmi.bg");
+            for (int i = 0; i < accounts; i++) {
+                outlook.addNewAccount("user" + i, "user" + i + "@fmi.bg");
+                outlook.createFolder("user" + i, "/inbox/mjt");
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(accounts);
+            try {
+                List<Future<?>> senders = new ArrayList<>();
+                for (int i = 0; i < accounts; i++) {
+                    String account = "user" + i;
+                    senders.add(executor.submit(() -> {
+                        for (int mail = 0; mail < mails; mail++) {
+                            outlook.receiveMail(account, metadata("hub@fmi.bg", mail), "Body " + account + " " + mail);
+                            if (mail == mails / 2) {
+                                outlook.addRule(account, "/inbox/mjt", "subject-includes: Mail", 5);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> sender : senders) {
+                    sender.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+        try (MailStore store = new MailStore(directory, options)) {
+            Outlook outlook = new Outlook(store);
+            for (int i = 0; i < accounts; i++) {
+                assertEquals(0, outlook.getMailsFromFolder("user" + i, "/inbox").size());
+                assertEquals(mails, outlook.getMailsFromFolder("user" + i, "/inbox/mjt").size());
+            }
+            assertEquals(accounts * mails, outlook.getMailsFromFolder("hub", "/sent").size());
+        }
+    }
+
+    @Test
+    void testRecoverIgnoresTornRecord() throws IOException {
+        try (MailStore store = new MailStore(directory, StoreOptions.defaults())) {
+            populate(new Outlook(store), 3);
+        }
+        List<Path> segments = files(directory, "wal-");
+        Files.write(segments.get(segments.size() - 1), new byte[] {0, 0, 0, 42, 1, 2, 3},
+            StandardOpenOption.APPEND);
+        try (MailStore store = new MailStore(directory, StoreOptions.defaults())) {
+            Outlook outlook = new Outlook(store);
+            assertEquals(3, outlook.getMailsFromFolder("xhist", "/inbox").size());
+            outlook.receiveMail("xhist", metadata("stoyo@fmi.bg", 7), "After restart");
+        }
+        try (MailStore store = new MailStore(directory, StoreOptions.defaults())) {
+            assertEquals(4, new Outlook(store).getMailsFromFolder("xhist", "/inbox").size());
+        }
+    }
+
+    @Test
+    void testMappedBodiesAreDecodedOnRead() {
+        try (MappedBodyStore bodies = new MappedBodyStore(directory.resolve("bodies"), 64)) {
+            Outlook outlook = new Outlook(null, null, bodies);
+            outlook.addNewAccount("xhist", "xhist@gmail.com");
+            outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+            outlook.createFolder("xhist", "/inbox/mjt");
+            outlook.addRule("xhist", "/inbox/mjt", "subject-or-body-includes: exam", 5);
+            String longBody = "Welcome to MJT! ".repeat(10) + "The exam is on Friday.";
+            outlook.receiveMail("xhist", metadata("stoyo@fmi.bg", 1), longBody);
+            outlook.receiveMail("xhist", metadata("stoyo@fmi.bg", 2), "Homework");
+            outlook.receiveMail("xhist", metadata("stoyo@fmi.bg", 2), "Homework");
+
+            Mail moved = outlook.getMailsFromFolder("xhist", "/inbox/mjt").iterator().next();
+            assertEquals(longBody, moved.body());
+            assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox").size(),
+                "Mails with equal bodies in different segments should still be equal");
+        }
+    }
+}
@@ -1,8 +1,22 @@
 package bg.sofia.uni.fmi.mjt.mail;
 
+import bg.sofia.uni.fmi.mjt.mail.body.MailBodyStore;
 import bg.sofia.uni.fmi.mjt.mail.exceptions.*;
+import bg.sofia.uni.fmi.mjt.mail.metrics.CountingMailMetrics;
+import bg.sofia.uni.fmi.mjt.mail.metrics.RuleStatistics;
+import bg.sofia.uni.fmi.mjt.mail.tree.RuleApplication;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class OutlookTest {
@@ -169,9 +183,12 @@ class OutlookTest {
         outlook.addNewAccount("xhist", "xhist@gmail.com");
         outlook.createFolder("xhist", "/inbox/random");
         outlook.createFolder("xhist", "/inbox/conflict");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
         outlook.addRule("xhist", "/inbox/random", rule, 5);
-        assertThrows(RuleAlreadyDefinedException.class,
-            () -> outlook.addRule("xhist", "/inbox/conflict", conflict, 5));
+        assertDoesNotThrow(() -> outlook.addRule("xhist", "/inbox/conflict", conflict, 5),
+            "Rules with equal priority but different conditions should both be kept");
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: hello", "Welcome!");
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox/conflict").size());
     }
 
     @Test
@@ -555,4 +572,374 @@ class OutlookTest {
         assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox/random").size());
         assertEquals(0, outlook.getMailsFromFolder("xhist", "/inbox").size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testReceiveMailWithManyRulesMatchesBodyKeyword() {
+        String mailMetadata = "subject: Hello\n" +
+            "recipients: xhist@gmail.com\n" +
+            "sender: stoyo@fmi.bg\n" +
+            "received: 2022-12-08 14:14";
+        String mailContent = "Welcome to MJT course!";
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/random");
+        outlook.createFolder("xhist", "/inbox/course");
+        outlook.addRule("xhist", "/inbox/random", "subject-includes: random", 3);
+        outlook.addRule("xhist", "/inbox/random", "subject-or-body-includes: exam\nfrom: stoyo@fmi.bg", 4);
+        outlook.addRule("xhist", "/inbox/course", "subject-or-body-includes: MJT, course", 5);
+        outlook.receiveMail("xhist", mailMetadata, mailContent);
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox/course").size());
+        assertEquals(0, outlook.getMailsFromFolder("xhist", "/inbox/random").size());
+        assertEquals(0, outlook.getMailsFromFolder("xhist", "/inbox").size());
+    }
+
+    @Test
+    void testSendMailWithApplicableRuleMarkupBody() {
+        String rule = "subject-or-body-includes: MJT, exam";
+        String mailMetadata = "subject: Newsletter\n" +
+            "recipients: xhist@gmail.com\n" +
+            "received: 2022-12-08 14:14";
+        String mailContent = "<html><body><p>The <b>MJT</b> exam is on 2023-01-20.</p></body></html>";
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/random");
+        outlook.addRule("xhist", "/inbox/random", rule, 5);
+        outlook.sendMail("stoyo", mailMetadata, mailContent);
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox/random").size());
+        assertEquals(0, outlook.getMailsFromFolder("xhist", "/inbox").size());
+    }
+
+    @Test
+    void testSendMailWithoutRecipientsIsBroadcast() {
+        String mailMetadata = "subject: Hello, MJT\n" +
+            "received: 2022-12-08 14:14";
+        String mailContent = "Welcome to MJT course!";
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("gosho", "gosho@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.sendMail("stoyo", mailMetadata, mailContent);
+        assertEquals(1, outlook.getMailsFromFolder("stoyo", "/sent").size());
+        assertEquals(0, outlook.getMailsFromFolder("stoyo", "/inbox").size());
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox").size());
+        assertEquals(1, outlook.getMailsFromFolder("gosho", "/inbox").size());
+    }
+
+    @Test
+    void testReceiveMailsReportsEveryMail() {
+        String rule = "subject-includes: MJT";
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/random");
+        outlook.addRule("xhist", "/inbox/random", rule, 5);
+        List<ReceiveResult> results = outlook.receiveMails("xhist", List.of(
+            new RawMail("sender: stoyo@fmi.bg\nsubject: Hello, MJT\nreceived: 2022-12-08 14:14", "Welcome!"),
+            new RawMail("sender: stoyo@fmi.bg\nsubject: Hello\nreceived: 2022-12-08 14:15", " "),
+            new RawMail("sender: xhist@gmail.com\nsubject: Hello\nreceived: 2022-12-08 14:16", "Myself"),
+            new RawMail("sender: stoyo@fmi.bg\nsubject: Hello\nreceived: 2022-12-08 14:17", "Welcome!")));
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isReceived());
+        assertInstanceOf(IllegalArgumentException.class, results.get(1).failure());
+        assertInstanceOf(IllegalArgumentException.class, results.get(2).failure());
+        assertTrue(results.get(3).isReceived());
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox/random").size());
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox").size());
+        assertEquals(2, outlook.getMailsFromFolder("stoyo", "/sent").size());
+        assertSame(outlook.getMailsFromFolder("xhist", "/inbox/random").iterator().next(), results.get(0).mail(),
+            "The result should hold the stored mail");
+    }
+
+    @Test
+    void testReceiveMailsAccountNotFound() {
+        assertThrows(AccountNotFoundException.class,
+            () -> outlook.receiveMails("xhist", List.of()));
+    }
+
+    @Test
+    void testReceiveMailWithWindowsLineEndingsAndColonInSubject() {
+        String rule = "subject-includes: exam";
+        String mailMetadata = "subject: Re: MJT exam\r\n" +
+            "sender: stoyo@fmi.bg\r\n" +
+            "recipients: xhist@gmail.com,\r\n" +
+            "received: 2022-12-08 14:14\r\n";
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/random");
+        outlook.addRule("xhist", "/inbox/random", rule, 5);
+        outlook.receiveMail("xhist", mailMetadata, "See you there!");
+        Collection<Mail> mails = outlook.getMailsFromFolder("xhist", "/inbox/random");
+        assertEquals(1, mails.size());
+        Mail mail = mails.iterator().next();
+        assertEquals("Re: MJT exam", mail.subject());
+        assertEquals(Set.of("xhist@gmail.com"), mail.recipients());
+        assertEquals(LocalDateTime.of(2022, 12, 8, 14, 14), mail.received());
+    }
+
+    @Test
+    void testReceiveMailWithDateFieldsOutOfRange() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        assertThrows(DateTimeParseException.class, () -> outlook.receiveMail("xhist",
+            "sender: stoyo@fmi.bg\nsubject: Hello\nreceived: 2022-13-08 14:14", "Month 13"));
+        assertThrows(DateTimeParseException.class, () -> outlook.receiveMail("xhist",
+            "sender: stoyo@fmi.bg\nsubject: Hello\nreceived: 2022-12-08 25:14", "Hour 25"));
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: Hello\nreceived: 2022-02-31 14:14", "Day 31");
+        assertEquals(LocalDateTime.of(2022, 2, 28, 14, 14),
+            outlook.getMailsFromFolder("xhist", "/inbox").iterator().next().received());
+    }
+
+    @Test
+    void testReceiveMailWithRuleForNestedFolder() {
+        String mailMetadata = "subject: Hello, MJT\n" +
+            "sender: stoyo@fmi.bg\n" +
+            "received: 2022-12-08 14:14";
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/important");
+        outlook.createFolder("xhist", "/inbox/important/work");
+        outlook.addRule("xhist", "/inbox/important/work", "subject-includes: MJT", 5);
+        outlook.receiveMail("xhist", mailMetadata, "Welcome to MJT course!");
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox/important/work").size());
+        assertEquals(0, outlook.getMailsFromFolder("xhist", "/inbox/important").size());
+        assertEquals(0, outlook.getMailsFromFolder("xhist", "/inbox").size());
+    }
+
+    @Test
+    void testGetMailsFromFolderInPages() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        for (int day = 1; day <= 5; day++) {
+            outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+                "subject: Day " + day + "\n" +
+                "received: 2022-12-0" + day + " 14:14", "Welcome to MJT course!");
+        }
+        MailPage first = outlook.getMailsFromFolder("xhist", "/inbox", 2, null);
+        assertEquals(List.of("Day 5", "Day 4"), first.mails().stream().map(Mail::subject).toList());
+        MailPage second = outlook.getMailsFromFolder("xhist", "/inbox", 2, first.continuationToken());
+        assertEquals(List.of("Day 3", "Day 2"), second.mails().stream().map(Mail::subject).toList());
+        MailPage last = outlook.getMailsFromFolder("xhist", "/inbox", 2, second.continuationToken());
+        assertEquals(List.of("Day 1"), last.mails().stream().map(Mail::subject).toList());
+        assertFalse(last.hasNext());
+    }
+
+    @Test
+    void testGetMailsFromFolderInvalidContinuationToken() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        assertThrows(IllegalArgumentException.class,
+            () -> outlook.getMailsFromFolder("xhist", "/inbox", 2, "random"));
+    }
+
+    @Test
+    void testGetNewestMails() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        for (int day : new int[] {3, 1, 5, 2, 4}) {
+            outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+                "subject: Day " + day + "\n" +
+                "received: 2022-12-0" + day + " 14:14", "Welcome to MJT course!");
+        }
+        assertEquals(List.of("Day 5", "Day 4", "Day 3"),
+            outlook.getNewestMails("xhist", "/inbox", 3).stream().map(Mail::subject).toList());
+    }
+
+    @Test
+    void testGetMailsReceivedBetween() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        for (int day = 1; day <= 5; day++) {
+            outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+                "subject: Day " + day + "\n" +
+                "received: 2022-12-0" + day + " 14:14", "Welcome to MJT course!");
+        }
+        List<Mail> mails = outlook.getMailsReceivedBetween("xhist", "/inbox",
+            LocalDateTime.of(2022, 12, 2, 14, 14), LocalDateTime.of(2022, 12, 4, 0, 0));
+        assertEquals(List.of("Day 3", "Day 2"), mails.stream().map(Mail::subject).toList());
+    }
+
+    @Test
+    void testSearchMatchesAllTermsNewestFirst() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+            "subject: Homework\n" +
+            "received: 2022-12-01 14:14", "The deadline for MJT is Friday");
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+            "subject: Exam\n" +
+            "received: 2022-12-02 14:14", "Friday is the MJT deadline");
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+            "subject: Lecture\n" +
+            "received: 2022-12-03 14:14", "No deadline this week");
+
+        List<Mail> mails = outlook.search("xhist", "mjt DEADLINE", 10);
+        assertEquals(List.of("Exam", "Homework"), mails.stream().map(Mail::subject).toList());
+        assertEquals(List.of("Exam"), outlook.search("xhist", "mjt deadline", 1).stream()
+            .map(Mail::subject).toList());
+    }
+
+    @Test
+    void testSearchPhraseAndSender() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.addNewAccount("ivan", "ivan@fmi.bg");
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+            "subject: Homework\n" +
+            "received: 2022-12-01 14:14", "The deadline for MJT is Friday");
+        outlook.receiveMail("xhist", "sender: ivan@fmi.bg\n" +
+            "subject: Exam\n" +
+            "received: 2022-12-02 14:14", "Friday is the MJT deadline");
+
+        assertEquals(List.of("Exam"), outlook.search("xhist", "\"mjt deadline\"", 10).stream()
+            .map(Mail::subject).toList());
+        assertEquals(List.of("Homework"), outlook.search("xhist", "from:stoyo@fmi.bg friday", 10).stream()
+            .map(Mail::subject).toList());
+        assertTrue(outlook.search("xhist", "\"homework the\"", 10).isEmpty(),
+            "Phrases should not span the subject and the body");
+        assertThrows(IllegalArgumentException.class, () -> outlook.search("xhist", "mjt", 0));
+    }
+
+    @Test
+    void testSendMailSharesOneMailAcrossAccounts() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.addNewAccount("ivan", "ivan@fmi.bg");
+        outlook.sendMail("stoyo", "subject: Announcement\nreceived: 2022-12-08 14:14", "Welcome to MJT course!");
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: Announcement\nreceived: 2022-12-08 14:14",
+            "Welcome to MJT course!");
+
+        Mail sent = outlook.getMailsFromFolder("stoyo", "/sent").iterator().next();
+        assertSame(sent, outlook.getMailsFromFolder("xhist", "/inbox").iterator().next());
+        assertSame(sent, outlook.getMailsFromFolder("ivan", "/inbox").iterator().next());
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox").size());
+    }
+
+    @Test
+    void testReceivedMailsGetIncreasingIds() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: First\nreceived: 2022-12-08 14:14", "MJT");
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: Second\nreceived: 2022-12-08 14:14", "MJT");
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: First\nreceived: 2022-12-08 14:14", "MJT");
+
+        List<Mail> mails = outlook.getNewestMails("xhist", "/inbox", 10);
+        assertEquals(List.of("Second", "First"), mails.stream().map(Mail::subject).toList());
+        assertTrue(mails.get(0).id() > mails.get(1).id());
+        assertTrue(mails.get(1).id() != Mail.NO_ID);
+        assertNotEquals(mails.get(0), mails.get(1));
+    }
+
+    @Test
+    void testAddRuleAsyncMovesInboxInChunks() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/mjt");
+        for (int i = 0; i < 3000; i++) {
+            outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+                "subject: " + (i % 3 == 0 ? "MJT lab " : "Lab ") + i + "\n" +
+                "received: 2022-12-08 14:14", "Welcome to the course!");
+        }
+
+        RuleApplication application = outlook.addRuleAsync("xhist", "/inbox/mjt", "subject-includes: MJT", 5);
+        application.completion().join();
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: MJT exam", "Welcome!");
+
+        assertTrue(application.isDone());
+        assertEquals(1000, application.candidates(), "Only mails containing the keyword should be checked");
+        assertEquals(1000, application.moved());
+        assertEquals(1.0, application.progress());
+        assertEquals(1001, outlook.getMailsFromFolder("xhist", "/inbox/mjt").size());
+        assertEquals(2000, outlook.getMailsFromFolder("xhist", "/inbox").size());
+    }
+
+    @Test
+    void testAddRuleMovesInboxMailsInTheirOrder() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/mjt");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+                "subject: " + (i % 2 == 0 ? "MJT Exam " : "Lab ") + i + "\n" +
+                "received: 2022-12-08 14:14", i % 3 == 0 ? "Welcome to MJT!" : "Welcome!");
+            if (i % 2 == 0 || i % 3 == 0) {
+                expected.add(0, (i % 2 == 0 ? "MJT Exam " : "Lab ") + i);
+            }
+        }
+
+        outlook.addRule("xhist", "/inbox/mjt", "subject-includes: Exam\nsubject-or-body-includes: MJT", 5);
+
+        assertEquals(expected, outlook.getMailsFromFolder("xhist", "/inbox/mjt", 50, null).mails().stream()
+            .map(Mail::subject).toList(), "Mails received at the same time should be moved in inbox order");
+    }
+
+    @Test
+    void testAddRuleInParallelMovesMatchingInboxMails() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/mjt");
+        for (int i = 0; i < 3000; i++) {
+            outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\n" +
+                "subject: Lab " + i + "\n" +
+                "received: 2022-12-08 14:14", i % 4 == 0 ? "Welcome to MJT course!" : "Welcome!");
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            RuleApplication application = outlook.addRuleInParallel("xhist", "/inbox/mjt",
+                "subject-or-body-includes: MJT\nfrom: stoyo@fmi.bg", 5, pool);
+            application.completion().join();
+
+            assertEquals(750, application.candidates(), "Only mails containing the keyword should be checked");
+            assertEquals(750, application.processed());
+            assertEquals(750, application.moved());
+            assertEquals(750, outlook.getMailsFromFolder("xhist", "/inbox/mjt").size());
+            assertEquals(2250, outlook.getMailsFromFolder("xhist", "/inbox").size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testAddRuleHighestPriorityWins() {
+        outlook.addNewAccount("xhist", "xhist@gmail.com");
+        outlook.addNewAccount("stoyo", "stoyo@fmi.bg");
+        outlook.addNewAccount("ivan", "ivan@fmi.bg");
+        outlook.createFolder("xhist", "/inbox/low");
+        outlook.createFolder("xhist", "/inbox/high");
+        outlook.createFolder("xhist", "/inbox/equal");
+        outlook.addRule("xhist", "/inbox/low", "subject-includes: mjt", 7);
+        outlook.addRule("xhist", "/inbox/high", "subject-includes: mjt\nfrom: stoyo@fmi.bg", 1);
+        outlook.addRule("xhist", "/inbox/equal", "subject-or-body-includes: mjt", 7);
+
+        outlook.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: mjt exam", "Welcome!");
+        outlook.receiveMail("xhist", "sender: ivan@fmi.bg\nsubject: mjt exam", "Welcome!");
+
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox/high").size(),
+            "Priority 1 should be the highest");
+        assertEquals(1, outlook.getMailsFromFolder("xhist", "/inbox/low").size(),
+            "Of rules with equal priority, the first added should win");
+        assertTrue(outlook.getMailsFromFolder("xhist", "/inbox/equal").isEmpty());
+    }
+
+    @Test
+    void testMetricsRecordRuleEvaluationsAndDeliveries() {
+        CountingMailMetrics metrics = new CountingMailMetrics();
+        Outlook measured = new Outlook(null, null, MailBodyStore.HEAP, metrics);
+        measured.addNewAccount("xhist", "xhist@gmail.com");
+        measured.addNewAccount("stoyo", "stoyo@fmi.bg");
+        measured.createFolder("xhist", "/inbox/mjt");
+        measured.createFolder("xhist", "/inbox/never");
+        measured.addRule("xhist", "/inbox/mjt", "subject-includes: mjt\nfrom: stoyo@fmi.bg", 1);
+        measured.addRule("xhist", "/inbox/never", "subject-includes: exam\nfrom: stoyo@fmi.bg", 2);
+
+        measured.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: mjt lab", "Welcome!");
+        measured.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: lab", "Welcome!");
+
+        Map<String, RuleStatistics> statistics = new HashMap<>();
+        metrics.ruleStatistics("xhist@gmail.com").forEach((rule, stats) -> statistics.put(rule.path(), stats));
+        assertEquals(2, statistics.get("/inbox/mjt").evaluations());
+        assertEquals(1, statistics.get("/inbox/mjt").hits());
+        assertEquals(1, statistics.get("/inbox/never").evaluations(), "A hit should stop the evaluation");
+        assertEquals(0, statistics.get("/inbox/never").hits());
+        assertEquals(2, metrics.deliveredMails("xhist@gmail.com"));
+        assertEquals(2, metrics.deliveryLatency("xhist@gmail.com").count());
+    }
+}
@@ -0,0 +1,65 @@
+package bg.sofia.uni.fmi.mjt.mail.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedStageTest {
+    @Test
+    void testRejectsWorkWhenTheShardIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ShardedStage stage = new ShardedStage("test", 1, 1)) {
+            CompletableFuture<Integer> running = stage.submit("key", () -> {
+                started.countDown();
+                awaitQuietly(release);
+                return 1;
+            }, Backpressure.REJECT);
+            started.await();
+            CompletableFuture<Integer> queued = stage.submit("key", () -> 2, Backpressure.REJECT);
+            CompletableFuture<Integer> rejected = stage.submit("key", () -> 3, Backpressure.REJECT);
+
+            CompletionException failure = assertThrows(CompletionException.class, rejected::join);
+            assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+            assertEquals(1, stage.queued());
+
+            release.countDown();
+            assertEquals(1, running.join());
+            assertEquals(2, queued.join());
+        }
+    }
+
+    @Test
+    void testWorkSubmittedWhileClosingIsRunOrRejected() throws InterruptedException {
+        ShardedStage stage = new ShardedStage("test", 4, 8);
+        List<CompletableFuture<Integer>> results = new CopyOnWriteArrayList<>();
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                results.add(stage.submit(i, () -> 1, Backpressure.BLOCK));
+            }
+        });
+        submitter.start();
+        while (results.size() < 100) {
+            Thread.onSpinWait();
+        }
+        stage.close();
+        submitter.join();
+
+        assertTrue(results.stream().allMatch(CompletableFuture::isDone), "Every submission should complete");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
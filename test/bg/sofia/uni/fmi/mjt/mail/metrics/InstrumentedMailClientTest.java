@@ -0,0 +1,57 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.body.MailBodyStore;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedMailClientTest {
+    @Test
+    void testRecordsOperationsAndPhases() {
+        CountingMailMetrics metrics = new CountingMailMetrics();
+        InstrumentedMailClient client =
+            new InstrumentedMailClient(new Outlook(null, null, MailBodyStore.HEAP, metrics), metrics);
+        client.addNewAccount("xhist", "xhist@gmail.com");
+        client.addNewAccount("stoyo", "stoyo@fmi.bg");
+        client.createFolder("xhist", "/inbox/mjt");
+        client.addRule("xhist", "/inbox/mjt", "subject-includes: mjt", 1);
+        client.sendMail("stoyo", "subject: mjt lab\nrecipients: xhist@gmail.com", "Welcome!");
+        client.receiveMail("xhist", "sender: stoyo@fmi.bg\nsubject: lab", "Welcome!");
+        assertThrows(AccountNotFoundException.class, () -> client.getMailsFromFolder("ivan", "/inbox"));
+
+        assertEquals(2, client.getOperations().get("addNewAccount").getCount());
+        assertEquals(1, client.getOperations().get("sendMail").getCount());
+        assertEquals(1, client.getOperations().get("getMailsFromFolder").getErrors());
+        assertTrue(client.getOperations().get("receiveMail").getP999() > 0);
+        assertEquals(3, client.getPhases().get("PARSE").getCount(), "Two mails and a rule should be parsed");
+        assertEquals(2, client.getPhases().get("RULE_MATCH").getCount());
+        assertEquals(1, client.getPhases().get("FAN_OUT").getCount());
+        assertEquals(1, client.getMailsFromFolder("xhist", "/inbox/mjt").size());
+    }
+
+    @Test
+    void testStatisticsAreReadableThroughJmx() throws Exception {
+        InstrumentedMailClient client = new InstrumentedMailClient(new Outlook());
+        client.addNewAccount("xhist", "xhist@gmail.com");
+        ObjectName name = client.registerMBean("jmx-test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            TabularData operations = (TabularData) server.getAttribute(name, "Operations");
+            CompositeData addNewAccount = operations.get(new Object[] {"addNewAccount"});
+            CompositeData statistics = (CompositeData) addNewAccount.get("value");
+
+            assertEquals(1L, statistics.get("count"));
+            assertThrows(IllegalStateException.class, () -> client.registerMBean("jmx-test"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package bg.sofia.uni.fmi.mjt.mail.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+    @Test
+    void testBucketsCoverEveryValueWithBoundedError() {
+        long[] values = {0, 1, 15, 16, 31, 32, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            assertTrue(highest >= value, "Bucket of " + value + " ends below it");
+            assertTrue(highest - value <= value / 16, "Bucket of " + value + " is too wide");
+        }
+    }
+
+    @Test
+    void testValueAtPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000, histogram.max());
+        assertEquals(500_500, histogram.mean(), 0.001);
+        assertEquals(500_000, histogram.valueAtPercentile(50), 500_000 / 16.0);
+        assertEquals(990_000, histogram.valueAtPercentile(99), 990_000 / 16.0);
+        assertEquals(1_000_000, histogram.valueAtPercentile(100));
+        assertThrows(IllegalArgumentException.class, () -> histogram.valueAtPercentile(101));
+    }
+}
@@ -0,0 +1,47 @@
+package bg.sofia.uni.fmi.mjt.mail.rules;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordMatcherTest {
+    @Test
+    void testFindMatchesWholeWordsOnly() {
+        KeywordMatcher matcher = new KeywordMatcher(List.of("mjt", "mjt2022", "lab", "no match", ""));
+        int mjt = matcher.idOf("mjt");
+        int mjt2022 = matcher.idOf("mjt2022");
+        int lab = matcher.idOf("lab");
+
+        long[] found = matcher.find("Welcome to mjt2022, the labs start in mjt");
+
+        assertTrue(KeywordMatcher.containsAll(found, new int[] {mjt, mjt2022}));
+        assertFalse(KeywordMatcher.containsAll(found, new int[] {lab}), "A prefix of a word is not a match");
+        assertFalse(KeywordMatcher.containsAll(matcher.find("MJT"), new int[] {mjt}), "Keywords are case sensitive");
+        assertEquals(KeywordMatcher.NO_KEYWORD, matcher.idOf("no match"));
+        assertEquals(KeywordMatcher.NO_KEYWORD, matcher.idOf(""));
+        assertEquals(KeywordMatcher.NO_KEYWORD, matcher.idOf("unknown"));
+    }
+
+    @Test
+    void testFindReportsKeywordsBeyondTheFirstBitmapWord() {
+        List<String> keywords = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            keywords.add("word" + i);
+            if (i % 3 == 0) {
+                text.append("word").append(i).append(' ');
+            }
+        }
+        KeywordMatcher matcher = new KeywordMatcher(keywords);
+
+        long[] found = matcher.find(text);
+
+        for (int i = 0; i < 200; i++) {
+            int[] id = {matcher.idOf("word" + i)};
+            assertEquals(i % 3 == 0, KeywordMatcher.containsAll(found, id), "word" + i);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package bg.sofia.uni.fmi.mjt.mail.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingsTest {
+    @Test
+    void testCursorAdvancesAcrossBlocks() {
+        Postings postings = new Postings();
+        for (int document = 0; document < 1000; document += 3) {
+            postings.add(document, new int[] {document % 7, document % 7 + 200}, 2);
+        }
+
+        assertEquals(334, postings.documentCount());
+        assertEquals(999, postings.documents()[333]);
+        Postings.Cursor cursor = postings.cursor();
+        assertEquals(300, cursor.advance(299));
+        assertEquals(300, cursor.advance(300));
+        assertTrue(cursor.hasPosition(300 % 7 + 200));
+        assertFalse(cursor.hasPosition(1));
+        assertArrayEquals(new int[] {300 % 7, 300 % 7 + 200}, cursor.positions());
+        assertEquals(303, cursor.next());
+        assertEquals(900, cursor.advance(898));
+        assertEquals(Postings.NO_MORE_DOCUMENTS, cursor.advance(1000));
+    }
+}
@@ -0,0 +1,92 @@
+package bg.sofia.uni.fmi.mjt.mail.shard;
+
+import bg.sofia.uni.fmi.mjt.mail.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.exceptions.AccountNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedMailClientTest {
+    private static final int ACCOUNTS = 40;
+
+    private final List<Outlook> outlooks = new ArrayList<>();
+
+    @Test
+    void testSendMailDeliversToAccountsOnEveryShard() {
+        ShardedMailClient client = new ShardedMailClient(List.of(shard(), shard(), shard()));
+        for (int i = 0; i < ACCOUNTS; i++) {
+            client.addNewAccount("user" + i, "user" + i + "@fmi.bg");
+        }
+        client.createFolder("user1", "/inbox/mjt");
+        client.addRule("user1", "/inbox/mjt", "subject-includes: mjt", 1);
+
+        client.sendMail("user0", "subject: mjt\nrecipients: user1@fmi.bg, user2@fmi.bg, user3@fmi.bg\n" +
+            "received: 2022-12-08 14:14", "Welcome!");
+        client.sendMail("user0", "subject: news\nreceived: 2022-12-08 14:15", "Hello, everyone!");
+        client.receiveMail("user2", "sender: user5@fmi.bg\nsubject: lab\nreceived: 2022-12-08 14:16", "Hi!");
+
+        assertEquals(2, client.getMailsFromFolder("user0", "/sent").size());
+        assertEquals(1, client.getMailsFromFolder("user1", "/inbox/mjt").size());
+        assertEquals(3, client.getMailsFromFolder("user2", "/inbox").size());
+        assertEquals(1, client.getMailsFromFolder("user5", "/sent").size());
+        for (int i = 4; i < ACCOUNTS; i++) {
+            assertEquals(1, client.getMailsFromFolder("user" + i, "/inbox").size(), "user" + i);
+        }
+        assertTrue(outlooks.stream().map(this::accountsOf).allMatch(count -> count > 0 && count < ACCOUNTS),
+            "Accounts are spread across the shards");
+    }
+
+    @Test
+    void testAddShardMovesAccountsWithTheirMails() {
+        ShardedMailClient client = new ShardedMailClient(List.of(shard(), shard()));
+        for (int i = 0; i < ACCOUNTS; i++) {
+            client.addNewAccount("user" + i, "user" + i + "@fmi.bg");
+            client.createFolder("user" + i, "/inbox/mjt");
+            client.addRule("user" + i, "/inbox/mjt", "subject-includes: mjt", 1);
+        }
+        client.sendMail("user0", "subject: mjt\nreceived: 2022-12-08 14:14", "Welcome!");
+        Map<Integer, Integer> before = new HashMap<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            before.put(i, client.getMailsFromFolder("user" + i, "/inbox/mjt").size());
+        }
+
+        int moved = client.addShard(shard());
+
+        assertTrue(moved > 0 && moved < ACCOUNTS, "Only the accounts of the new shard move: " + moved);
+        assertEquals(3, client.shards());
+        assertEquals(ACCOUNTS, outlooks.stream().mapToInt(this::accountsOf).sum(), "Moved accounts are removed");
+        assertEquals(moved, accountsOf(outlooks.get(2)));
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertEquals(before.get(i), client.getMailsFromFolder("user" + i, "/inbox/mjt").size(), "user" + i);
+        }
+        client.sendMail("user0", "subject: mjt 2\nreceived: 2022-12-08 14:15", "Welcome again!");
+        for (int i = 1; i < ACCOUNTS; i++) {
+            assertEquals(2, client.getMailsFromFolder("user" + i, "/inbox/mjt").size(), "user" + i);
+        }
+        assertEquals(2, client.getMailsFromFolder("user0", "/sent").size());
+    }
+
+    private int accountsOf(Outlook outlook) {
+        int count = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            try {
+                outlook.exportAccount("user" + i);
+                count++;
+            } catch (AccountNotFoundException e) {
+                // the account is on another shard
+            }
+        }
+        return count;
+    }
+
+    private ShardTransport shard() {
+        Outlook outlook = new Outlook();
+        outlooks.add(outlook);
+        return new LocalShardTransport(outlook);
+    }
+}
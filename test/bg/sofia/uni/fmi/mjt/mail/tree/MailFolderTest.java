@@ -0,0 +1,44 @@
+package bg.sofia.uni.fmi.mjt.mail.tree;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.MailPage;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailFolderTest {
+    private static final Account STOYO = new Account("stoyo@fmi.bg", "stoyo");
+
+    private static Mail mail(String subject, int minute) {
+        return new Mail(STOYO, Set.of("xhist@gmail.com"), subject, "Body of " + subject,
+            LocalDateTime.of(2022, 12, 8, 14, minute));
+    }
+
+    @Test
+    void testReadsSkipMailsReleasedMeanwhile() {
+        MailRepository repository = new MailRepository();
+        MailFolder folder = new MailFolder("inbox", repository);
+        Mail kept = repository.intern(mail("Homework", 1));
+        Mail released = repository.intern(mail("Lecture", 2));
+        folder.addMail(kept);
+        folder.addMail(released);
+        repository.release(kept);
+        repository.release(released);
+
+        // drops the folder's reference too, as a concurrent removal of the account would
+        repository.release(released);
+
+        assertEquals(List.of(kept), new ArrayList<>(folder.getMails()));
+        assertEquals(List.of(kept), folder.getNewest(5));
+        assertEquals(List.of(kept), folder.getMailsInAddedOrder());
+        MailPage page = folder.getPage(Integer.MAX_VALUE, null);
+        assertEquals(List.of(kept), page.mails());
+        assertNull(page.continuationToken());
+    }
+}
@@ -0,0 +1,50 @@
+package bg.sofia.uni.fmi.mjt.mail.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailIdMapTest {
+    @Test
+    void testPutGetAndRemoveAcrossGrowth() {
+        MailIdMap map = new MailIdMap();
+        for (long id = 1; id <= 1000; id++) {
+            assertTrue(map.putIfAbsent(id, id * 10));
+        }
+        assertFalse(map.putIfAbsent(500, 1));
+        assertEquals(1000, map.size());
+        assertEquals(5000, map.get(500));
+
+        for (long id = 1; id <= 1000; id += 2) {
+            assertEquals(id * 10, map.remove(id));
+        }
+        assertEquals(MailIdMap.NO_VALUE, map.remove(1));
+        assertEquals(500, map.size());
+        assertFalse(map.containsKey(1));
+        assertTrue(map.containsKey(2));
+
+        Set<Long> ids = new HashSet<>();
+        PrimitiveIterator.OfLong iterator = map.ids();
+        while (iterator.hasNext()) {
+            ids.add(iterator.nextLong());
+        }
+        assertEquals(500, ids.size());
+        assertTrue(ids.stream().allMatch(id -> id % 2 == 0));
+    }
+
+    @Test
+    void testRemovedSlotsAreReused() {
+        MailIdMap map = new MailIdMap();
+        for (long id = 1; id <= 100_000; id++) {
+            map.putIfAbsent(id, id);
+            map.remove(id);
+        }
+        assertEquals(0, map.size());
+        assertTrue(map.putIfAbsent(7, 7));
+        assertEquals(7, map.get(7));
+    }
+}
@@ -0,0 +1,60 @@
+package bg.sofia.uni.fmi.mjt.mail.tree;
+
+import bg.sofia.uni.fmi.mjt.mail.Account;
+import bg.sofia.uni.fmi.mjt.mail.Mail;
+import bg.sofia.uni.fmi.mjt.mail.rules.RuleDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailRepositoryTest {
+    private static final Account STOYO = new Account("stoyo@fmi.bg", "stoyo");
+    private static final Account XHIST = new Account("xhist@gmail.com", "xhist");
+
+    @Test
+    void testMailsAreDroppedOnceNoFolderHoldsThem() {
+        MailRepository repository = new MailRepository();
+        AccountMail sender = new AccountMail(STOYO, repository);
+        AccountMail receiver = new AccountMail(XHIST, repository);
+        Mail mail = new Mail(STOYO, Set.of(XHIST.emailAddress()), "Homework", "Deadline is Friday",
+            LocalDateTime.of(2022, 12, 8, 14, 14));
+
+        receiver.receiveMail(new Mail(STOYO, Set.of("ivan@fmi.bg"), "Lecture", "Not for xhist",
+            LocalDateTime.of(2022, 12, 8, 14, 15)));
+        assertEquals(0, repository.size(), "Rejected mails are not kept");
+
+        sender.sendMail(mail);
+        receiver.receiveMail(mail);
+        assertEquals(1, repository.size());
+        assertSame(sender.getMailsFromFolder("/sent").iterator().next(),
+            receiver.getMailsFromFolder("/inbox").iterator().next());
+
+        sender.remove();
+        assertEquals(1, repository.size(), "The mail is still in the receiver's inbox");
+        assertEquals(mail.subject(), receiver.getMailsFromFolder("/inbox").iterator().next().subject());
+        receiver.remove();
+        assertEquals(0, repository.size());
+    }
+
+    @Test
+    void testClassificationHoldsTheMailUntilItIsDelivered() {
+        MailRepository repository = new MailRepository();
+        AccountMail receiver = new AccountMail(XHIST, repository);
+        receiver.createFolder("/inbox/mjt");
+        Mail mail = new Mail(STOYO, Set.of(XHIST.emailAddress()), "MJT homework", "Deadline is Friday",
+            LocalDateTime.of(2022, 12, 8, 14, 14));
+
+        Classification classification = receiver.classify(mail);
+        assertEquals(1, repository.size(), "The classified mail is stored once, for its delivery");
+        receiver.addRule(new RuleDefinition("/inbox/mjt", Set.of("MJT"), Set.of(), Set.of(), "", 1));
+        receiver.deliver(classification);
+
+        assertEquals(1, receiver.getMailsFromFolder("/inbox/mjt").size(), "A rule added meanwhile still applies");
+        classification.release();
+        receiver.remove();
+        assertEquals(0, repository.size());
+    }
+}